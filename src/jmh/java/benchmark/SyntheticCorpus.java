@@ -0,0 +1,146 @@
+package benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import indexer.IndexFiles;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Generates a reproducible corpus for the benchmarks: documents of made-up English-like words whose frequencies
+ * follow a Zipf distribution, with the metadata file {@link IndexFiles} reads next to them.
+ * <p>
+ * The same seed always gives the same vocabulary, documents and queries.
+ */
+public class SyntheticCorpus {
+    private static final String[] ONSETS = {"b", "c", "d", "f", "g", "h", "l", "m", "n", "p", "r", "s", "t", "v",
+            "br", "cr", "dr", "pl", "st", "tr", "sh", "ch"};
+    private static final String[] VOWELS = {"a", "e", "i", "o", "u", "ea", "ou", "ai"};
+    private static final String[] CODAS = {"", "", "n", "r", "s", "t", "ll", "nd", "ck", "mp"};
+    private static final String[] SUFFIXES = {"", "", "", "s", "ed", "ing", "er", "ly", "ness", "ation", "ful",
+            "ize", "ities", "ement"};
+
+    private final String[] vocabulary;
+    private final double[] cumulative;
+    private final Random random;
+
+    /**
+     * @param vocabularySize number of distinct words
+     * @param seed           seed of everything generated
+     */
+    public SyntheticCorpus(int vocabularySize, long seed) {
+        this.random = new Random(seed);
+        this.vocabulary = new String[vocabularySize];
+        for (int i = 0; i < vocabularySize; i++) {
+            vocabulary[i] = word(1 + random.nextInt(3));
+        }
+        this.cumulative = new double[vocabularySize];
+        double sum = 0;
+        for (int i = 0; i < vocabularySize; i++) {
+            sum += 1.0 / (i + 1);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < vocabularySize; i++) {
+            cumulative[i] /= sum;
+        }
+    }
+
+    private String word(int syllables) {
+        StringBuilder word = new StringBuilder();
+        for (int s = 0; s < syllables; s++) {
+            word.append(ONSETS[random.nextInt(ONSETS.length)])
+                    .append(VOWELS[random.nextInt(VOWELS.length)])
+                    .append(CODAS[random.nextInt(CODAS.length)]);
+        }
+        return word.append(SUFFIXES[random.nextInt(SUFFIXES.length)]).toString();
+    }
+
+    /**
+     * @return a word drawn by frequency, rank 1 the most common
+     */
+    public String nextWord() {
+        int rank = Arrays.binarySearch(cumulative, random.nextDouble());
+        return vocabulary[rank >= 0 ? rank : Math.min(-rank - 1, vocabulary.length - 1)];
+    }
+
+    /**
+     * @return {@code count} words separated by spaces, with a line break every 12 words
+     */
+    public String nextText(int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.append(nextWord()).append(i % 12 == 11 ? '\n' : ' ');
+        }
+        return text.toString();
+    }
+
+    /**
+     * @return queries of one to three words, taken from the more common half of the vocabulary so they have hits
+     */
+    public String[] queries(int count) {
+        String[] queries = new String[count];
+        for (int q = 0; q < count; q++) {
+            int words = 1 + random.nextInt(3);
+            StringBuilder query = new StringBuilder();
+            for (int w = 0; w < words; w++) {
+                query.append(w > 0 ? " " : "").append(vocabulary[20 + random.nextInt(vocabulary.length / 2)]);
+            }
+            queries[q] = query.toString();
+        }
+        return queries;
+    }
+
+    /**
+     * Writes {@code docs} documents of about {@code words} words to {@code dir/docs} and their metadata, one json
+     * record per line, to {@code dir/meta.jsonl}.
+     */
+    public void write(Path dir, int docs, int words) throws IOException {
+        Path docsDir = Files.createDirectories(dir.resolve("docs"));
+        ObjectMapper mapper = new ObjectMapper();
+        try (BufferedWriter meta = Files.newBufferedWriter(dir.resolve("meta.jsonl"), StandardCharsets.UTF_8)) {
+            for (int d = 0; d < docs; d++) {
+                String recno = Integer.toString(d);
+                Files.write(docsDir.resolve(recno),
+                        nextText(words / 2 + random.nextInt(words)).getBytes(StandardCharsets.UTF_8));
+                Map<String, Object> record = new LinkedHashMap<String, Object>();
+                record.put("recno", recno);
+                record.put("url", "http://example.com/" + recno);
+                record.put("title", nextWord() + " " + nextWord());
+                record.put("pagerank", random.nextFloat());
+                meta.write(mapper.writeValueAsString(record));
+                meta.newLine();
+            }
+        }
+    }
+
+    /**
+     * Writes the corpus and indexes it with {@link IndexFiles} into {@code dir/index}.
+     *
+     * @return directory of the index
+     */
+    public Path writeIndex(Path dir, int docs, int words) throws IOException {
+        write(dir, docs, words);
+        Path index = dir.resolve("index");
+        IndexFiles.main(new String[]{"-index", index.toString(), "-docs", dir.resolve("docs").toString(),
+                "-metadata", dir.resolve("meta.jsonl").toString()});
+        return index;
+    }
+
+    public static void delete(Path dir) throws IOException {
+        if (dir == null || !Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package indexer;
+
+import benchmark.SyntheticCorpus;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import queryExpansion.ContentsAnalyzer;
+import queryExpansion.Stopwords;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Documents per second through {@link IndexFiles#indexDoc}, reading synthetic documents from disk and indexing them
+ * into an in-memory directory. Each iteration starts with an empty index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IndexDocBenchmark {
+    @Param({"false", "true"})
+    public boolean storeContents;
+
+    @Param({"400"})
+    public int words;
+
+    private Path dir;
+    private Path[] files;
+    private MetaField[] fields;
+    private DocumentSource source;
+    private IndexWriter writer;
+    private int next;
+    private PrintStream out;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("index-benchmark");
+        new SyntheticCorpus(20000, 42).write(dir, 1000, words);
+        files = new Path[1000];
+        fields = new MetaField[files.length];
+        try (MetaFieldReader metaFields = new MetaFieldReader(dir.resolve("meta.jsonl"))) {
+            for (int i = 0; metaFields.hasNext(); i++) {
+                fields[i] = metaFields.next();
+                files[i] = dir.resolve("docs").resolve(fields[i].getRecno());
+            }
+        }
+        source = new MappedDocumentSource();
+        // indexDoc logs every document, keep that out of the benchmark output
+        out = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        System.setOut(out);
+        SyntheticCorpus.delete(dir);
+    }
+
+    @Setup(Level.Iteration)
+    public void openWriter() throws IOException {
+        IndexWriterConfig iwc = new IndexWriterConfig(new ContentsAnalyzer(Stopwords.defaults(), false));
+        iwc.setOpenMode(IndexWriterConfig.OpenMode.CREATE);
+        writer = new IndexWriter(new ByteBuffersDirectory(), iwc);
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeWriter() throws IOException {
+        writer.close();
+    }
+
+    @Benchmark
+    public void indexDoc() throws IOException {
+        int i = next;
+        next = (next + 1) % files.length;
+        IndexFiles.indexDoc(writer, fields[i], files[i], source.open(files[i]), storeContents);
+    }
+}
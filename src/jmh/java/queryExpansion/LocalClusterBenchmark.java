@@ -0,0 +1,95 @@
+package queryExpansion;
+
+import benchmark.SyntheticCorpus;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.store.FSDirectory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The local cluster builders on their own, from the hits of a query to the expanded query, without the searches
+ * around them. Each invocation expands the next of a fixed list of queries.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LocalClusterBenchmark {
+    private Path dir;
+    private DirectoryReader reader;
+    private IndexSearcher searcher;
+    private Analyzer analyzer;
+    private Query[] queries;
+    private ScoreDoc[][] hits;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException, ParseException {
+        SyntheticCorpus corpus = new SyntheticCorpus(20000, 42);
+        dir = Files.createTempDirectory("cluster-benchmark");
+        Path index = corpus.writeIndex(dir, 2000, 400);
+        reader = DirectoryReader.open(FSDirectory.open(index));
+        searcher = new IndexSearcher(reader);
+        analyzer = ContentsAnalyzer.forIndex(reader, Stopwords.defaults());
+        String[] queryStrings = corpus.queries(64);
+        queries = new Query[queryStrings.length];
+        hits = new ScoreDoc[queryStrings.length][];
+        QueryParser parser = new QueryParser("contents", analyzer);
+        for (int q = 0; q < queries.length; q++) {
+            queries[q] = parser.parse(queryStrings[q]);
+            hits[q] = searcher.search(queries[q], 100).scoreDocs;
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        reader.close();
+        SyntheticCorpus.delete(dir);
+    }
+
+    private int nextQuery() {
+        int q = next;
+        next = (next + 1) % queries.length;
+        return q;
+    }
+
+    @Benchmark
+    public ExpandedQuery association() throws IOException {
+        int q = nextQuery();
+        return new AssociationCluster(searcher, analyzer).localCluster(queries[q], hits[q]);
+    }
+
+    @Benchmark
+    public ExpandedQuery metric() throws IOException {
+        int q = nextQuery();
+        return new MetricCluster(searcher, analyzer).localCluster(queries[q], hits[q]);
+    }
+
+    @Benchmark
+    public ExpandedQuery scalar() throws IOException {
+        int q = nextQuery();
+        return new ScalarCluster(searcher, analyzer).localCluster(queries[q], hits[q]);
+    }
+}
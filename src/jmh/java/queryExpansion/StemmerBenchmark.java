@@ -0,0 +1,103 @@
+package queryExpansion;
+
+import benchmark.SyntheticCorpus;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.analysis.en.PorterStemFilter;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * {@link Stemmer} on synthetic words: copied in and out of the stemmer, the way the clusters used it, and in place as
+ * a {@link PorterStemmerFilter} next to Lucene's {@link PorterStemFilter}. Both filters read the words from the same
+ * whitespace tokenizer, so the difference between them is the stemming.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StemmerBenchmark {
+    private static final int WORDS = 1000;
+
+    private char[][] words;
+    private String text;
+    private Analyzer stemmerFilter;
+    private Analyzer luceneFilter;
+
+    @Setup
+    public void setUp() {
+        SyntheticCorpus corpus = new SyntheticCorpus(20000, 42);
+        words = new char[WORDS][];
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < WORDS; i++) {
+            words[i] = corpus.nextWord().toCharArray();
+            sb.append(words[i]).append(' ');
+        }
+        text = sb.toString();
+        stemmerFilter = analyzer(PorterStemmerFilter::new);
+        luceneFilter = analyzer(PorterStemFilter::new);
+    }
+
+    private static Analyzer analyzer(Function<TokenStream, TokenStream> filter) {
+        return new Analyzer() {
+            @Override
+            protected TokenStreamComponents createComponents(String fieldName) {
+                Tokenizer source = new WhitespaceTokenizer();
+                return new TokenStreamComponents(source, filter.apply(source));
+            }
+        };
+    }
+
+    private void consume(Analyzer analyzer, Blackhole blackhole) throws IOException {
+        try (TokenStream stream = analyzer.tokenStream("contents", text)) {
+            CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                blackhole.consume(term.length());
+            }
+            stream.end();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WORDS)
+    public void stem(Blackhole blackhole) {
+        Stemmer stemmer = new Stemmer();
+        for (char[] word : words) {
+            stemmer.add(word, word.length);
+            stemmer.stem();
+            blackhole.consume(stemmer.toString());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WORDS)
+    public void stemmerFilter(Blackhole blackhole) throws IOException {
+        consume(stemmerFilter, blackhole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WORDS)
+    public void luceneFilter(Blackhole blackhole) throws IOException {
+        consume(luceneFilter, blackhole);
+    }
+}
@@ -0,0 +1,129 @@
+package queryExpansion;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Accumulating (query term, co-term) values for 10 feedback documents and taking the top 4 co-terms of every query
+ * term, with {@link TermPairAccumulator} against the string-keyed map the clusters used before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TermPairAccumulatorBenchmark {
+    private static final int DOCS = 10;
+    private static final int QUERY_TERMS = 3;
+    private static final int TOP = 4;
+
+    @Param({"500", "3000"})
+    public int termsPerDoc;
+
+    private String[] terms;
+    private int[][] docTerms;
+    private int[][] docFreqs;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        int vocabulary = termsPerDoc * 4;
+        terms = new String[vocabulary];
+        for (int i = 0; i < vocabulary; i++) {
+            terms[i] = "term" + i;
+        }
+        docTerms = new int[DOCS][];
+        docFreqs = new int[DOCS][];
+        for (int d = 0; d < DOCS; d++) {
+            // the query terms are 0..QUERY_TERMS-1 and occur in every document
+            docTerms[d] = new int[termsPerDoc];
+            docFreqs[d] = new int[termsPerDoc];
+            for (int i = 0; i < termsPerDoc; i++) {
+                docTerms[d][i] = i < QUERY_TERMS ? i : QUERY_TERMS + random.nextInt(vocabulary - QUERY_TERMS);
+                docFreqs[d][i] = 1 + random.nextInt(5);
+            }
+        }
+    }
+
+    @Benchmark
+    public List<String> stringKeyedMap() {
+        HashMap<String, ClusterStructure> clusters = new HashMap<String, ClusterStructure>();
+        for (int d = 0; d < DOCS; d++) {
+            for (int q = 0; q < QUERY_TERMS; q++) {
+                for (int i = 0; i < termsPerDoc; i++) {
+                    String key = terms[q] + "," + terms[docTerms[d][i]];
+                    ClusterStructure cs = clusters.get(key);
+                    if (cs == null) {
+                        cs = new ClusterStructure();
+                        cs.query_term = terms[q];
+                        cs.co_term = terms[docTerms[d][i]];
+                        clusters.put(key, cs);
+                    }
+                    cs.value += docFreqs[d][q] * docFreqs[d][i];
+                }
+            }
+        }
+        List<Map.Entry<String, ClusterStructure>> sorted = clusters.entrySet().stream()
+                .sorted((a, b) -> Float.compare(b.getValue().value, a.getValue().value))
+                .collect(Collectors.toList());
+        List<String> expanded = new ArrayList<String>();
+        for (int q = 0; q < QUERY_TERMS; q++) {
+            int count = 0;
+            for (Map.Entry<String, ClusterStructure> entry : sorted) {
+                String[] pair = entry.getKey().split(",");
+                if (count < TOP && pair[0].equals(terms[q]) && !pair[1].equals(terms[q])) {
+                    expanded.add(pair[1]);
+                    count++;
+                }
+            }
+        }
+        return expanded;
+    }
+
+    @Benchmark
+    public List<String> termPairAccumulator() {
+        TermPairAccumulator clusters = new TermPairAccumulator();
+        for (int d = 0; d < DOCS; d++) {
+            for (int q = 0; q < QUERY_TERMS; q++) {
+                for (int i = 0; i < termsPerDoc; i++) {
+                    clusters.add(q, docTerms[d][i], docFreqs[d][q] * docFreqs[d][i]);
+                }
+            }
+        }
+        List<String> expanded = new ArrayList<String>();
+        for (int q = 0; q < QUERY_TERMS; q++) {
+            int queryTerm = q;
+            for (int coTerm : clusters.topK(q, TOP, coTerm -> coTerm != queryTerm)) {
+                expanded.add(terms[coTerm]);
+            }
+        }
+        return expanded;
+    }
+
+    /**
+     * The value the clusters kept per "query_term,co_term" key before {@link TermPairAccumulator}.
+     */
+    static class ClusterStructure {
+        String query_term;
+        String co_term;
+        float value;
+    }
+}
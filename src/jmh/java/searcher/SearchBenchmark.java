@@ -0,0 +1,90 @@
+package searcher;
+
+import benchmark.SyntheticCorpus;
+import indexer.BuildCooccurrence;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Search#queryIndex} end to end, for every expansion method, over an index of a synthetic corpus. Each
+ * invocation runs the next of a fixed list of queries. The caches are off unless asked for, with them every query
+ * after the first round would be a cache hit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+    @Param({"none", "rochio", "association", "metric", "scalar", "global"})
+    public String expansionMethod;
+
+    @Param({"true"})
+    public boolean usePageRank;
+
+    @Param({"2000"})
+    public int docs;
+
+    @Param({"false"})
+    public boolean caches;
+
+    // 0 searches the whole index again with the expanded query
+    @Param({"0", "100"})
+    public int rescorePoolSize;
+
+    private Path dir;
+    private Search search;
+    private String[] queries;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        SyntheticCorpus corpus = new SyntheticCorpus(20000, 42);
+        dir = Files.createTempDirectory("search-benchmark");
+        Path index = corpus.writeIndex(dir, docs, 400);
+        queries = corpus.queries(64);
+        if ("global".equals(expansionMethod)) {
+            // the neighbors GLOBAL expands with, next to the index where Search looks for them
+            BuildCooccurrence.main(new String[]{"-index", index.toString()});
+        }
+        SearchSettings settings = new SearchSettings();
+        settings.setIndex(index.toString());
+        // no refreshes while measuring, the index does not change
+        settings.setRefreshSeconds(TimeUnit.DAYS.toSeconds(1));
+        if (!caches) {
+            settings.setExpansionCacheSize(0);
+            settings.setResultCacheMaxBytes(0);
+        }
+        settings.setRescorePoolSize(rescorePoolSize);
+        search = new Search(settings);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        search.close();
+        SyntheticCorpus.delete(dir);
+    }
+
+    @Benchmark
+    public QueryHit queryIndex() {
+        String query = queries[next];
+        next = (next + 1) % queries.length;
+        return search.queryIndex(query, usePageRank, expansionMethod);
+    }
+}
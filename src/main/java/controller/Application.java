@@ -1,11 +1,21 @@
 package controller;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+import searcher.Search;
+import searcher.SearchSettings;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @SpringBootApplication
 public class Application {
@@ -14,6 +24,30 @@ public class Application {
         SpringApplication.run(Application.class, args);
     }
 
+    @Bean
+    @ConfigurationProperties(prefix = "search")
+    public SearchSettings searchSettings() {
+        return new SearchSettings();
+    }
+
+    // One searcher for the whole application, the index is reopened in the background when it changes
+    @Bean(destroyMethod = "close")
+    public Search search(SearchSettings settings) throws IOException {
+        return new Search(settings);
+    }
+
+    // Searches run here instead of on the servlet threads. When every thread is busy and the queue is full, requests
+    // are turned away at once rather than piling up
+    @Bean(destroyMethod = "shutdownNow")
+    public ThreadPoolExecutor searchExecutor(@Value("${search.executor.threads:0}") int threads,
+                                             @Value("${search.executor.queue-size:100}") int queueSize) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+        return new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), r -> new Thread(r, "search-" + threadCount.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
     // Global Cross origins
     @Bean
     public WebMvcConfigurer corsConfigurer() {
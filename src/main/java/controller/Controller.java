@@ -1,23 +1,45 @@
 package controller;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
-import searcher.Hit;
+import org.springframework.web.context.request.async.DeferredResult;
+import searcher.CacheStats;
+import searcher.Page;
 import searcher.QueryHit;
 import searcher.Search;
 
-import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicLong;
 
 @RestController
 public class Controller {
     private static final String template = "Hello, %s!";
     private final AtomicLong counter = new AtomicLong();
+    private final Search search;
+    private final ExecutorService searchExecutor;
+    private final long timeoutMillis;
+    private final long retryAfterSeconds;
+
+    public Controller(Search search, ExecutorService searchExecutor,
+                      @Value("${search.executor.timeout-ms:10000}") long timeoutMillis,
+                      @Value("${search.executor.retry-after-seconds:1}") long retryAfterSeconds) {
+        this.search = search;
+        this.searchExecutor = searchExecutor;
+        this.timeoutMillis = timeoutMillis;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
 
     @RequestMapping("/greeting")
     public String greeting(@RequestParam(value = "name", defaultValue = "World") String name) {
@@ -25,32 +47,79 @@ public class Controller {
         return name;
     }
 
+    /**
+     * Searches on the search executor, the servlet thread is released right away. Answers 503 with Retry-After when
+     * the executor is saturated or the search does not finish in time.
+     */
     @RequestMapping(path = "/get", method = RequestMethod.GET)
-    public QueryHit get(@RequestParam Map<String, String> customQuery) {
+    public DeferredResult<ResponseEntity<QueryHit>> get(@RequestParam Map<String, String> customQuery) {
         boolean usePageRank = true;
 
         String query = customQuery.get("q");
         String applyPR = customQuery.get("applyPR");
         String expansion_method = customQuery.get("exp");
-//        String currentpage = customQuery.get("currentpage");
+        String page = customQuery.get("page");
+        String size = customQuery.get("size");
+        String searchAfter = customQuery.get("searchAfter");
+        boolean withTimings = "true".equals(customQuery.get("timings"));
 
         if (applyPR.equals("false")) {
             usePageRank = false;
         }
 
-        System.out.println("customQuery = q " + query + customQuery.containsKey("q"));
-        System.out.println("customQuery = applyPR " + applyPR + customQuery.containsKey("applyPR"));
-        System.out.println("customQuery = exp " + expansion_method + customQuery.containsKey("exp"));
-//        System.out.println("customQuery = currentpage " + currentpage + customQuery.containsKey("currentpage"));
+        // without page, size or cursor the response holds the first 100 hits, as before paging
+        int pageSize = size != null ? Integer.parseInt(size) : Page.MAX_SIZE;
+        Page hitsPage = searchAfter != null ? Page.after(searchAfter, pageSize)
+                : Page.number(page != null ? Integer.parseInt(page) : 1, pageSize);
+        boolean applyPageRank = usePageRank;
 
+        DeferredResult<ResponseEntity<QueryHit>> result = new DeferredResult<>(timeoutMillis, unavailable());
         try {
-            Search search = new Search("index");
-            QueryHit queryHit = search.queryIndex(query, usePageRank, expansion_method);
-            search.close();
-            return queryHit;
-        } catch (IOException e) {
-            List<Hit> resultHits = new ArrayList<>();
-            return new QueryHit("", resultHits);
+            Future<?> task = searchExecutor.submit(() -> {
+                try {
+                    result.setResult(ResponseEntity.ok(
+                            search.queryIndex(query, applyPageRank, expansion_method, hitsPage, withTimings)));
+                } catch (RuntimeException e) {
+                    result.setErrorResult(e);
+                }
+            });
+            // a search still waiting in the queue is dropped, one already running is interrupted and stops before its
+            // next stage
+            result.onTimeout(() -> task.cancel(true));
+        } catch (RejectedExecutionException e) {
+            result.setResult(unavailable());
         }
+        return result;
+    }
+
+    private ResponseEntity<QueryHit> unavailable() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds))
+                .build();
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public String badRequest(IllegalArgumentException e) {
+        return e.getMessage();
+    }
+
+    /**
+     * Latency of every stage of the search per expansion method, and the caches.
+     */
+    @RequestMapping(path = "/metrics", method = RequestMethod.GET)
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("stages", search.getStageMetrics().snapshot());
+        metrics.put("caches", cache());
+        return metrics;
+    }
+
+    @RequestMapping(path = "/cache", method = RequestMethod.GET)
+    public Map<String, CacheStats> cache() {
+        Map<String, CacheStats> stats = new LinkedHashMap<>();
+        stats.put("expansion", search.getExpansionCacheStats());
+        stats.put("results", search.getResultCacheStats());
+        return stats;
     }
 }
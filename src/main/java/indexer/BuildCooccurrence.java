@@ -0,0 +1,257 @@
+package indexer;
+
+import org.apache.lucene.analysis.CharArraySet;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import queryExpansion.GlobalCooccurrence;
+import queryExpansion.Stopwords;
+import queryExpansion.TermDictionary;
+import queryExpansion.TermPairAccumulator;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Computes the association of every pair of terms over the whole corpus and writes the strongest neighbors of every
+ * term to a {@link GlobalCooccurrence} file next to the index. Run it after {@link IndexFiles}, it reads the term
+ * vectors of the contents field.
+ * <p>
+ * For terms u and v with c(u,v) = sum of f(u)*f(v) over all documents, the association is
+ * c(u,v) / (c(u,v) + c(u,u) + c(v,v)), the same as the local association clusters compute over the feedback
+ * documents. Pairs are accumulated for a range of terms per pass over the documents. A range holds as many terms as
+ * fit a budget of pairs, counting for every term an upper bound of its pairs: the terms of the documents it occurs
+ * in, at most the whole vocabulary. A pass takes about 32 bytes per pair of the budget, some 130 MB with the default
+ * of 4 million.
+ */
+public class BuildCooccurrence {
+    private static final String FIELD = "contents";
+
+    private BuildCooccurrence() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        String usage = "java indexer.BuildCooccurrence [-index INDEX_PATH] [-out FILE] [-neighbors N] [-min-df N]"
+                + " [-max-df-ratio R] [-pairs-per-pass N] [-stopwords FILE]\n\n"
+                + "This writes the N strongest neighbors (default 20) of every term of the index in INDEX_PATH to FILE,"
+                + " by default " + GlobalCooccurrence.FILE_NAME + " in INDEX_PATH, for the GLOBAL expansion method.\n"
+                + "Terms in fewer than -min-df documents (default 2) or in more than -max-df-ratio of them"
+                + " (default 0.5) are left out, as are terms with digits and stopwords, those of FILE if given\n"
+                + "Each pass over the documents counts the pairs of as many terms as fit -pairs-per-pass"
+                + " (default 4000000), about 32 bytes each";
+        String indexPath = "index";
+        String outPath = null;
+        int neighbors = 20;
+        int minDocFreq = 2;
+        double maxDocFreqRatio = 0.5;
+        long pairsPerPass = 4_000_000;
+        String stopwordsPath = null;
+        for (int i = 0; i < args.length; i++) {
+            if ("-index".equals(args[i])) {
+                indexPath = args[i + 1];
+                i++;
+            } else if ("-out".equals(args[i])) {
+                outPath = args[i + 1];
+                i++;
+            } else if ("-neighbors".equals(args[i])) {
+                neighbors = Integer.parseInt(args[i + 1]);
+                i++;
+            } else if ("-min-df".equals(args[i])) {
+                minDocFreq = Integer.parseInt(args[i + 1]);
+                i++;
+            } else if ("-max-df-ratio".equals(args[i])) {
+                maxDocFreqRatio = Double.parseDouble(args[i + 1]);
+                i++;
+            } else if ("-pairs-per-pass".equals(args[i])) {
+                pairsPerPass = Long.parseLong(args[i + 1]);
+                i++;
+            } else if ("-stopwords".equals(args[i])) {
+                stopwordsPath = args[i + 1];
+                i++;
+            } else {
+                System.err.println("Usage: " + usage);
+                System.exit(1);
+            }
+        }
+        if (neighbors < 1 || pairsPerPass < 1) {
+            System.err.println("Usage: " + usage);
+            System.exit(1);
+        }
+        Path out = outPath != null ? Paths.get(outPath) : Paths.get(indexPath, GlobalCooccurrence.FILE_NAME);
+
+        CharArraySet stopwords = Stopwords.load(stopwordsPath);
+        Date start = new Date();
+        try (IndexReader reader = DirectoryReader.open(FSDirectory.open(Paths.get(indexPath)))) {
+            build(reader, out, neighbors, minDocFreq, (int) (maxDocFreqRatio * reader.numDocs()), pairsPerPass,
+                    stopwords);
+        }
+        Date end = new Date();
+        System.out.println(end.getTime() - start.getTime() + " total milliseconds");
+    }
+
+    /**
+     * Adds f(u)*f(v) for every pair of terms of one document whose first term is in the range.
+     */
+    private static void addPairs(Terms termVector, TermDictionary terms, int from, int to,
+                                 TermPairAccumulator pairs) throws IOException {
+        List<Integer> docIds = new ArrayList<Integer>();
+        List<Integer> docFreqs = new ArrayList<Integer>();
+        TermsEnum termsEnum = termVector.iterator();
+        BytesRef text;
+        while ((text = termsEnum.next()) != null) {
+            int id = terms.id(text.utf8ToString());
+            if (id >= 0) {
+                docIds.add(id);
+                // a term vector holds a single document, so its total term frequency is the frequency in it
+                docFreqs.add((int) termsEnum.totalTermFreq());
+            }
+        }
+        for (int i = 0; i < docIds.size(); i++) {
+            int u = docIds.get(i);
+            if (u < from || u >= to) {
+                continue;
+            }
+            for (int j = 0; j < docIds.size(); j++) {
+                if (i != j) {
+                    pairs.add(u, docIds.get(j), (float) docFreqs.get(i) * docFreqs.get(j));
+                }
+            }
+        }
+    }
+
+    /**
+     * @param docTerms terms of the vocabulary in every document
+     * @return for every term of the vocabulary an upper bound of the terms it occurs with: the sum of the other terms
+     * of its documents, at most the rest of the vocabulary
+     */
+    private static long[] pairBounds(Terms fieldTerms, TermDictionary terms, int[] docTerms, Bits liveDocs)
+            throws IOException {
+        long[] bounds = new long[terms.size()];
+        if (fieldTerms == null) {
+            return bounds;
+        }
+        TermsEnum termsEnum = fieldTerms.iterator();
+        PostingsEnum postings = null;
+        for (int id = 0; id < bounds.length; id++) {
+            termsEnum.seekExact(new BytesRef(terms.term(id)));
+            postings = termsEnum.postings(postings, PostingsEnum.NONE);
+            long bound = 0;
+            for (int doc = postings.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = postings.nextDoc()) {
+                if (liveDocs == null || liveDocs.get(doc)) {
+                    bound += docTerms[doc] - 1;
+                }
+            }
+            bounds[id] = Math.min(bound, bounds.length - 1);
+        }
+        return bounds;
+    }
+
+    /**
+     * @param maxDocFreq   terms in more documents are left out
+     * @param pairsPerPass pairs a pass over the documents may count, the terms of a pass are chosen by an upper
+     *                     bound of their pairs plus their neighbors. A pass has one term at least
+     * @param stopwords    left out too, in case the index was written without them
+     */
+    static void build(IndexReader reader, Path out, int neighbors, int minDocFreq, int maxDocFreq,
+                      long pairsPerPass, CharArraySet stopwords) throws IOException {
+        // the vocabulary in term order, which is the order the file needs, and c(u,u) of every term
+        TermDictionary terms = new TermDictionary();
+        List<Float> selfList = new ArrayList<Float>();
+        // terms of the vocabulary in every document
+        int[] docTerms = new int[reader.maxDoc()];
+        Bits liveDocs = MultiFields.getLiveDocs(reader);
+        Terms fieldTerms = MultiFields.getTerms(reader, FIELD);
+        if (fieldTerms != null) {
+            TermsEnum termsEnum = fieldTerms.iterator();
+            PostingsEnum postings = null;
+            BytesRef text;
+            while ((text = termsEnum.next()) != null) {
+                if (termsEnum.docFreq() < minDocFreq || termsEnum.docFreq() > maxDocFreq) {
+                    continue;
+                }
+                String term = text.utf8ToString();
+                if (term.chars().anyMatch(Character::isDigit) || stopwords.contains(term)) {
+                    continue;
+                }
+                float self = 0;
+                postings = termsEnum.postings(postings, PostingsEnum.FREQS);
+                for (int doc = postings.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = postings.nextDoc()) {
+                    if (liveDocs == null || liveDocs.get(doc)) {
+                        self += (float) postings.freq() * postings.freq();
+                        docTerms[doc]++;
+                    }
+                }
+                terms.intern(term);
+                selfList.add(self);
+            }
+        }
+        float[] self = new float[selfList.size()];
+        for (int i = 0; i < self.length; i++) {
+            self[i] = selfList.get(i);
+        }
+        long[] pairBounds = pairBounds(fieldTerms, terms, docTerms, liveDocs);
+        System.out.println("Computing neighbors of " + terms.size() + " terms over " + reader.numDocs()
+                + " documents");
+
+        int[] rowIds = new int[neighbors];
+        float[] rowWeights = new float[neighbors];
+        int skipped = 0;
+        try (GlobalCooccurrence.Writer writer = new GlobalCooccurrence.Writer(out, terms.terms(), neighbors)) {
+            for (int from = 0, to; from < terms.size(); from = to) {
+                long passPairs = pairBounds[from];
+                long passCost = passPairs + neighbors;
+                for (to = from + 1; to < terms.size() && passCost + pairBounds[to] + neighbors <= pairsPerPass; to++) {
+                    passPairs += pairBounds[to];
+                    passCost += pairBounds[to] + neighbors;
+                }
+                TermPairAccumulator pairs = new TermPairAccumulator((int) Math.min(passPairs, pairsPerPass));
+                skipped = 0;
+                for (int doc = 0; doc < reader.maxDoc(); doc++) {
+                    if (liveDocs != null && !liveDocs.get(doc)) {
+                        continue;
+                    }
+                    Terms termVector = reader.getTermVector(doc, FIELD);
+                    if (termVector == null) {
+                        skipped++;
+                        continue;
+                    }
+                    addPairs(termVector, terms, from, to, pairs);
+                }
+                pairs.update((u, v, value) -> value / (value + self[u] + self[v]));
+
+                // the strongest neighbors of every term of the range, in term order
+                int[] counts = new int[to - from];
+                int[] neighborIds = new int[(to - from) * neighbors];
+                float[] neighborWeights = new float[(to - from) * neighbors];
+                int rangeFrom = from;
+                pairs.topKByFirst(from, to, neighbors, (first, second, value) -> {
+                    int row = first - rangeFrom;
+                    neighborIds[row * neighbors + counts[row]] = second;
+                    neighborWeights[row * neighbors + counts[row]++] = value;
+                });
+                for (int row = 0; row < counts.length; row++) {
+                    System.arraycopy(neighborIds, row * neighbors, rowIds, 0, neighbors);
+                    System.arraycopy(neighborWeights, row * neighbors, rowWeights, 0, neighbors);
+                    writer.addRow(rowIds, rowWeights, counts[row]);
+                }
+                System.out.println("Terms " + from + " to " + to + ": " + pairs.size() + " pairs");
+            }
+            writer.finish();
+        }
+        if (skipped > 0) {
+            System.out.println(skipped + " documents have no term vectors and were left out, reindex them");
+        }
+        System.out.println("Wrote " + out);
+    }
+}
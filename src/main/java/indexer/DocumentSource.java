@@ -0,0 +1,40 @@
+package indexer;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Path;
+
+/**
+ * Where the text of a document comes from when it is indexed.
+ */
+interface DocumentSource {
+
+    /**
+     * Opens a document. The returned content is read later, possibly on another thread.
+     *
+     * @param file the document to open
+     * @return the content of the document
+     * @throws IOException if the document cannot be opened
+     */
+    Content open(Path file) throws IOException;
+
+    /**
+     * The text of one opened document.
+     */
+    interface Content {
+        /**
+         * @return size of the document in bytes
+         */
+        long length();
+
+        /**
+         * @return a reader over the whole text, for fields that are only indexed
+         */
+        Reader reader();
+
+        /**
+         * @return the whole text at once, for fields that are also stored
+         */
+        String text() throws IOException;
+    }
+}
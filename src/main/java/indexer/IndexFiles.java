@@ -1,8 +1,6 @@
 package indexer;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.CharArraySet;
 import org.apache.lucene.document.*;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
@@ -10,16 +8,16 @@ import org.apache.lucene.index.IndexWriterConfig.OpenMode;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import queryExpansion.ContentsAnalyzer;
+import queryExpansion.Stopwords;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.Date;
 
 /**
@@ -30,22 +28,46 @@ import java.util.Date;
  */
 public class IndexFiles {
 
+    // query expansion reads the terms of feedback documents from their term vectors instead of re-analyzing them
+    private static final FieldType CONTENTS_TYPE = contentsType(false);
+    private static final FieldType STORED_CONTENTS_TYPE = contentsType(true);
+
     private IndexFiles() {
     }
 
+    private static FieldType contentsType(boolean stored) {
+        FieldType type = new FieldType(stored ? TextField.TYPE_STORED : TextField.TYPE_NOT_STORED);
+        type.setStoreTermVectors(true);
+        type.setStoreTermVectorPositions(true);
+        type.freeze();
+        return type;
+    }
+
     /**
      * Index all text files under a directory.
      */
     public static void main(String[] args) throws IOException {
         String usage = "java org.apache.lucene.demo.indexer.IndexFiles"
-                + " [-index INDEX_PATH] [-docs DOCS_PATH] [-metadata METADATA_PATH] [-update]\n\n"
+                + " [-index INDEX_PATH] [-docs DOCS_PATH] [-metadata METADATA_PATH] [-update]"
+                + " [-threads N] [-queue N] [-store] [-stem]"
+                + " [-stopwords FILE]\n\n"
                 + "This indexes the documents in DOCS_PATH, creating a Lucene index"
-                + "in INDEX_PATH that can be searched with searcher.SearchFiles";
+                + "in INDEX_PATH that can be searched with searcher.SearchFiles\n"
+                + "METADATA_PATH is a json array of records or json lines, one record per line\n"
+                + "With -threads greater than 1 documents are analyzed on N threads, reading at most"
+                + " -queue documents ahead (default 4 per thread)\n"
+                + "With -store a copy of the document text is stored next to its term vectors\n"
+                + "With -stem terms are reduced to their Porter stems, searches of the index then stem queries too\n"
+                + "Stopwords are left out of the index, FILE replaces the default list, one word per line";
         String indexPath = "index";
         String docsPath = null;
         String metadataPath = null;
-        ;
         boolean create = true;
+        int threads = 1;
+        int queueSize = 0;
+        boolean storeContents = false;
+        boolean stem = false;
+        String stopwordsPath = null;
         for (int i = 0; i < args.length; i++) {
             if ("-index".equals(args[i])) {
                 indexPath = args[i + 1];
@@ -58,10 +80,23 @@ public class IndexFiles {
             } else if ("-metadata".equals(args[i])) {
                 metadataPath = args[i + 1];
                 i++;
+            } else if ("-threads".equals(args[i])) {
+                threads = Integer.parseInt(args[i + 1]);
+                i++;
+            } else if ("-queue".equals(args[i])) {
+                queueSize = Integer.parseInt(args[i + 1]);
+                i++;
+            } else if ("-store".equals(args[i])) {
+                storeContents = true;
+            } else if ("-stem".equals(args[i])) {
+                stem = true;
+            } else if ("-stopwords".equals(args[i])) {
+                stopwordsPath = args[i + 1];
+                i++;
             }
         }
 
-        if (docsPath == null || metadataPath == null) {
+        if (docsPath == null || metadataPath == null || threads < 1) {
             System.err.println("Usage: " + usage);
             System.exit(1);
         }
@@ -72,20 +107,14 @@ public class IndexFiles {
             System.exit(1);
         }
 
-        // parse metadata file, a json file
-        byte[] jsonData = Files.readAllBytes(Paths.get(metadataPath));
-        String s = new String(jsonData);
-        ObjectMapper objectMapper = new ObjectMapper();
-
-        // json to object
-        MetaField[] metaFields = objectMapper.readValue(s, MetaField[].class);
-
+        // metadata file, a json array or json lines, is parsed one record at a time while indexing
         Date start = new Date();
-        try {
+        try (MetaFieldReader metaFields = new MetaFieldReader(Paths.get(metadataPath))) {
             System.out.println("Indexing to directory '" + indexPath + "'...");
 
             Directory dir = FSDirectory.open(Paths.get(indexPath));
-            Analyzer analyzer = new StandardAnalyzer();
+            CharArraySet stopwords = Stopwords.load(stopwordsPath);
+            ContentsAnalyzer analyzer = new ContentsAnalyzer(stopwords, stem);
             IndexWriterConfig iwc = new IndexWriterConfig(analyzer);
 
             if (create) {
@@ -105,22 +134,62 @@ public class IndexFiles {
             // iwc.setRAMBufferSizeMB(256.0);
 
             IndexWriter writer = new IndexWriter(dir, iwc);
-            for (MetaField field : metaFields) {
-                indexDoc(writer, field, Paths.get(docsPath, field.getRecno()));
-            }
+            // searchers analyze queries with the analyzer recorded here
+            writer.setLiveCommitData(Collections.singletonMap(ContentsAnalyzer.COMMIT_KEY,
+                    analyzer.commitValue()).entrySet());
+            IndexStats stats = new IndexStats();
+            DocumentSource source = new MappedDocumentSource();
+            // a failed run is rolled back, leaving the index as it was before
+            boolean success = false;
+            try {
+                if (threads > 1) {
+                    ParallelIndexer indexer = new ParallelIndexer(writer, source, storeContents, stats, threads,
+                            queueSize > 0 ? queueSize : 4 * threads);
+                    try {
+                        while (metaFields.hasNext()) {
+                            MetaField field = metaFields.next();
+                            indexer.submit(field, Paths.get(docsPath, field.getRecno()));
+                        }
+                        indexer.finish();
+                    } finally {
+                        indexer.close();
+                    }
+                } else {
+                    while (metaFields.hasNext()) {
+                        MetaField field = metaFields.next();
+                        Path file = Paths.get(docsPath, field.getRecno());
+                        try {
+                            DocumentSource.Content content = source.open(file);
+                            indexDoc(writer, field, file, content, storeContents);
+                            stats.add(content.length());
+                        } catch (NoSuchFileException e) {
+                            System.out.println("File not found" + e.getMessage());
+                        }
+                    }
+                }
 
-            // NOTE: if you want to maximize search performance,
-            // you can optionally call forceMerge here.  This can be
-            // a terribly costly operation, so generally it's only
-            // worth it when your index is relatively static (ie
-            // you're done adding documents to it):
-            //
-            // writer.forceMerge(1);
+                // NOTE: if you want to maximize search performance,
+                // you can optionally call forceMerge here.  This can be
+                // a terribly costly operation, so generally it's only
+                // worth it when your index is relatively static (ie
+                // you're done adding documents to it):
+                //
+                // writer.forceMerge(1);
 
-            writer.close();
+                success = true;
+            } finally {
+                if (success) {
+                    writer.close();
+                } else {
+                    writer.rollback();
+                }
+            }
 
             Date end = new Date();
             System.out.println(end.getTime() - start.getTime() + " total milliseconds");
+            System.out.println("Indexed " + stats.report());
+        } catch (InterruptedException e) {
+            System.out.println(" interrupted while indexing");
         } catch (
                 IOException e) {
             System.out.println(" caught a " + e.getClass() +
@@ -130,15 +199,18 @@ public class IndexFiles {
     }
 
     /**
-     * Indexes a single document
+     * Indexes a single document from its opened contents. Safe to call from several threads on the same writer.
      */
-    static void indexDoc(IndexWriter writer, MetaField fields, Path file) throws IOException {
-        try (InputStream stream = Files.newInputStream(file)) {
+    static void indexDoc(IndexWriter writer, MetaField fields, Path file, DocumentSource.Content content,
+                         boolean storeContents) throws IOException {
+        try {
             // make a new, empty document
             Document doc = new Document();
 
             Field pathField = new StringField("path", file.toString(), Field.Store.YES);
             doc.add(pathField);
+            // path, url and title are also kept as doc values, so hits can be shown without reading stored fields
+            doc.add(new BinaryDocValuesField("path", new BytesRef(file.toString())));
 
             // Add the pagerank of the file to a FeatureField named feature with feature name pagerank
             // For testing this feature, assign use the document id as pagerank
@@ -152,6 +224,7 @@ public class IndexFiles {
             // Add the URL of the file to a field name TextField with name url.
             Field url = new TextField("url", fields.getUrl(), Field.Store.YES);
             doc.add(url);
+            doc.add(new BinaryDocValuesField("url", new BytesRef(fields.getUrl())));
 
             // Add the title of the file as a TextField, makes it searchable
             String titleText = fields.getTitle();
@@ -160,17 +233,17 @@ public class IndexFiles {
             }
             Field title = new TextField("title", titleText, Field.Store.YES);
             doc.add(title);
+            doc.add(new BinaryDocValuesField("title", new BytesRef(titleText)));
 
             long lastModified = Files.getLastModifiedTime(file).toMillis();
             doc.add(new LongPoint("modified", lastModified));
 
-            BufferedReader br = new BufferedReader(new InputStreamReader(stream, Charset.forName("UTF-8")));
-            StringBuffer sb = new StringBuffer();
-            String sCurrentLine;
-            while ((sCurrentLine = br.readLine()) != null) {
-                sb.append(sCurrentLine);
+            // a stored field needs the whole text, an indexed-only one is analyzed straight from the reader
+            if (storeContents) {
+                doc.add(new Field("contents", content.text(), STORED_CONTENTS_TYPE));
+            } else {
+                doc.add(new Field("contents", content.reader(), CONTENTS_TYPE));
             }
-            doc.add(new TextField("contents", sb.toString(), Field.Store.YES));
 
             if (writer.getConfig().getOpenMode() == OpenMode.CREATE) {
                 // New index, so we just add the document (no old document can be there):
@@ -0,0 +1,28 @@
+package indexer;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the documents and bytes that went into the index, safe to update from several indexing threads.
+ */
+class IndexStats {
+    private final AtomicLong docs = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final long start = System.currentTimeMillis();
+
+    void add(long docBytes) {
+        docs.incrementAndGet();
+        bytes.addAndGet(docBytes);
+    }
+
+    /**
+     * @return throughput summary since this object was created
+     */
+    String report() {
+        long millis = Math.max(1, System.currentTimeMillis() - start);
+        double seconds = millis / 1000.0;
+        double megabytes = bytes.get() / (1024.0 * 1024.0);
+        return String.format("%d documents, %.1f MB in %d ms (%.1f docs/s, %.2f MB/s)",
+                docs.get(), megabytes, millis, docs.get() / seconds, megabytes / seconds);
+    }
+}
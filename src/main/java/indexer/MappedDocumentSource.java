@@ -0,0 +1,138 @@
+package indexer;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads UTF-8 documents, through a memory mapping of the file for large ones.
+ * <p>
+ * The bytes are decoded straight from the buffer into the one of whoever reads, the analyzer when indexing, so a
+ * mapped document is never copied onto the heap as a whole. Smaller documents are read into a heap buffer instead: a
+ * mapping costs more than a read for them, and it is only released when the buffer is garbage collected, so mapping
+ * every document of a large corpus can run into the limit on mappings per process.
+ */
+class MappedDocumentSource implements DocumentSource {
+    static final int DEFAULT_MAP_THRESHOLD = 1 << 20;
+
+    private final long mapThreshold;
+
+    MappedDocumentSource() {
+        this(DEFAULT_MAP_THRESHOLD);
+    }
+
+    /**
+     * @param mapThreshold documents of at least this many bytes are mapped, smaller ones are read
+     */
+    MappedDocumentSource(long mapThreshold) {
+        this.mapThreshold = mapThreshold;
+    }
+
+    @Override
+    public Content open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Document too large to map: " + file);
+            }
+            if (size >= mapThreshold) {
+                // the mapping stays valid after the channel is closed
+                return new BufferContent(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+            }
+            // the content may be read on another thread after the next document is opened, so it gets its own buffer
+            ByteBuffer bytes = ByteBuffer.allocate((int) size);
+            while (bytes.hasRemaining()) {
+                if (channel.read(bytes) < 0) {
+                    throw new IOException("Document shrank while reading: " + file);
+                }
+            }
+            bytes.flip();
+            return new BufferContent(bytes);
+        }
+    }
+
+    private static class BufferContent implements Content {
+        private final ByteBuffer bytes;
+
+        BufferContent(ByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public long length() {
+            return bytes.limit();
+        }
+
+        @Override
+        public Reader reader() {
+            return new Utf8Reader(bytes.duplicate());
+        }
+
+        @Override
+        public String text() {
+            return StandardCharsets.UTF_8.decode(bytes.duplicate()).toString();
+        }
+    }
+
+    /**
+     * Decodes UTF-8 from a byte buffer into the caller's char array, malformed input is replaced.
+     */
+    static class Utf8Reader extends Reader {
+        private final ByteBuffer bytes;
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        // a surrogate pair does not fit into a single char read, keep its second half for the next read
+        private final CharBuffer pair = CharBuffer.allocate(2);
+        private boolean done;
+
+        Utf8Reader(ByteBuffer bytes) {
+            this.bytes = bytes;
+            this.pair.flip();
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (pair.hasRemaining()) {
+                cbuf[off] = pair.get();
+                return 1;
+            }
+            if (done) {
+                return -1;
+            }
+            CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+            decode(out);
+            if (out.position() == off && !done) {
+                pair.clear();
+                decode(pair);
+                pair.flip();
+                return read(cbuf, off, len);
+            }
+            return out.position() == off ? -1 : out.position() - off;
+        }
+
+        private void decode(CharBuffer out) {
+            CoderResult result = decoder.decode(bytes, out, true);
+            if (result.isUnderflow() && decoder.flush(out).isUnderflow()) {
+                done = true;
+            }
+        }
+
+        @Override
+        public void close() {
+            done = true;
+            pair.position(pair.limit());
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package indexer;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+/**
+ * Streams the metadata file one {@link MetaField} at a time, so it is never held in memory as a whole.
+ * <p>
+ * Accepts either a json array of records or json lines, one record per line.
+ */
+class MetaFieldReader implements Iterator<MetaField>, Closeable {
+    private final MappingIterator<MetaField> records;
+
+    MetaFieldReader(Path metadataPath) throws IOException {
+        // a root-level array is unwrapped, a sequence of root-level objects is read as is
+        this.records = new ObjectMapper().readerFor(MetaField.class).readValues(Files.newInputStream(metadataPath));
+    }
+
+    @Override
+    public boolean hasNext() {
+        return records.hasNext();
+    }
+
+    @Override
+    public MetaField next() {
+        return records.next();
+    }
+
+    @Override
+    public void close() throws IOException {
+        records.close();
+    }
+}
@@ -0,0 +1,137 @@
+package indexer;
+
+import org.apache.lucene.index.IndexWriter;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Indexes documents on several threads sharing one {@link IndexWriter}.
+ * <p>
+ * The calling thread opens the files and hands them over through a bounded queue, so reading never runs more than
+ * {@code queueSize} documents ahead of the workers that analyze and add them.
+ */
+class ParallelIndexer {
+    private static final IndexTask END = new IndexTask(null, null, null);
+    private final IndexWriter writer;
+    private final DocumentSource source;
+    private final boolean storeContents;
+    private final IndexStats stats;
+    private final int threads;
+    private final BlockingQueue<IndexTask> queue;
+    private final ExecutorService workers;
+    private final AtomicReference<Exception> failure = new AtomicReference<>();
+    private volatile boolean stopped;
+
+    ParallelIndexer(IndexWriter writer, DocumentSource source, boolean storeContents, IndexStats stats, int threads,
+                    int queueSize) {
+        this.writer = writer;
+        this.source = source;
+        this.storeContents = storeContents;
+        this.stats = stats;
+        this.threads = threads;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "indexer-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < threads; i++) {
+            workers.execute(this::work);
+        }
+    }
+
+    /**
+     * Opens a document and queues it for indexing, blocks while the queue is full.
+     */
+    void submit(MetaField fields, Path file) throws IOException, InterruptedException {
+        checkFailure();
+        DocumentSource.Content content;
+        try {
+            content = source.open(file);
+        } catch (NoSuchFileException e) {
+            System.out.println("File not found" + e.getMessage());
+            return;
+        }
+        queue.put(new IndexTask(fields, file, content));
+    }
+
+    /**
+     * Waits until every queued document is indexed and stops the workers.
+     *
+     * @throws IOException if indexing any of the documents failed
+     */
+    void finish() throws IOException, InterruptedException {
+        for (int i = 0; i < threads; i++) {
+            queue.put(END);
+        }
+        workers.shutdown();
+        workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        checkFailure();
+    }
+
+    /**
+     * Stops the workers without indexing the documents still queued, for when reading or indexing failed. Does
+     * nothing once {@link #finish()} has returned.
+     */
+    void close() throws InterruptedException {
+        if (workers.isTerminated()) {
+            return;
+        }
+        stopped = true;
+        queue.clear();
+        workers.shutdown();
+        // one end marker per worker, offered so this never blocks on a queue that is shorter than the workers
+        while (!workers.awaitTermination(100, TimeUnit.MILLISECONDS)) {
+            queue.offer(END);
+        }
+    }
+
+    private void work() {
+        try {
+            IndexTask task;
+            while ((task = queue.take()) != END) {
+                // keep draining after a failure so the reading thread never blocks on a full queue
+                if (failure.get() != null || stopped) {
+                    continue;
+                }
+                try {
+                    IndexFiles.indexDoc(writer, task.fields, task.file, task.content, storeContents);
+                    stats.add(task.content.length());
+                } catch (IOException | RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        Exception e = failure.get();
+        if (e != null) {
+            throw new IOException("indexing failed", e);
+        }
+    }
+
+    private static class IndexTask {
+        final MetaField fields;
+        final Path file;
+        final DocumentSource.Content content;
+
+        IndexTask(MetaField fields, Path file, DocumentSource.Content content) {
+            this.fields = fields;
+            this.file = file;
+            this.content = content;
+        }
+    }
+}
@@ -1,11 +0,0 @@
-package queryExpansion;
-
-public class ClusterStructure {
-    public String query_term;
-    public String co_term;
-    public float value;
-
-    public ClusterStructure() {
-
-    }
-}
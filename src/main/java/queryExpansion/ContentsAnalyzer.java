@@ -0,0 +1,79 @@
+package queryExpansion;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.CharArraySet;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.StopFilter;
+import org.apache.lucene.analysis.StopwordAnalyzerBase;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.index.DirectoryReader;
+
+import java.io.IOException;
+
+/**
+ * Analyzer of the contents: {@link StandardAnalyzer} with the {@link Stopwords} in place of its short list, optionally
+ * followed by a {@link PorterStemmerFilter}. Stopwords are dropped and terms stemmed once when a document is indexed,
+ * so they never reach term vectors or the expansion vocabulary, and queries are analyzed the same way.
+ * <p>
+ * An index and its queries have to use the same analyzer. The indexer records which one it used in the commit, and
+ * {@link #forIndex} picks it up again on the search side.
+ */
+public final class ContentsAnalyzer extends StopwordAnalyzerBase {
+    // commit user data key the indexer records the analyzer under, and its values
+    public static final String COMMIT_KEY = "analyzer";
+    private static final String STOPWORDS = "stopwords";
+    private static final String STOPWORDS_PORTER = "stopwords,porter";
+    private static final String PORTER = "porter";    // stemmed with the short English stopword list
+    private final boolean stem;
+
+    /**
+     * @param stopwords words to drop
+     * @param stem      reduce terms to their Porter stems
+     */
+    public ContentsAnalyzer(CharArraySet stopwords, boolean stem) {
+        super(stopwords);
+        this.stem = stem;
+    }
+
+    /**
+     * @param stopwords stopwords the index was written with, the commit only says whether it has them
+     * @return the analyzer the index was written with, a {@link StandardAnalyzer} for indexes that do not record one
+     */
+    public static Analyzer forIndex(DirectoryReader reader, CharArraySet stopwords) throws IOException {
+        String analyzer = reader.getIndexCommit().getUserData().get(COMMIT_KEY);
+        if (STOPWORDS.equals(analyzer)) {
+            return new ContentsAnalyzer(stopwords, false);
+        } else if (STOPWORDS_PORTER.equals(analyzer)) {
+            return new ContentsAnalyzer(stopwords, true);
+        } else if (PORTER.equals(analyzer)) {
+            return new ContentsAnalyzer(EnglishAnalyzer.ENGLISH_STOP_WORDS_SET, true);
+        }
+        return new StandardAnalyzer();
+    }
+
+    /**
+     * @return value the indexer records under {@link #COMMIT_KEY}
+     */
+    public String commitValue() {
+        return stem ? STOPWORDS_PORTER : STOPWORDS;
+    }
+
+    @Override
+    protected TokenStreamComponents createComponents(String fieldName) {
+        StandardTokenizer source = new StandardTokenizer();
+        TokenStream stream = new LowerCaseFilter(source);
+        stream = new StopFilter(stream, stopwords);
+        if (stem) {
+            stream = new PorterStemmerFilter(stream);
+        }
+        return new TokenStreamComponents(source, stream);
+    }
+
+    @Override
+    protected TokenStream normalize(String fieldName, TokenStream in) {
+        return new LowerCaseFilter(in);
+    }
+}
@@ -0,0 +1,129 @@
+package queryExpansion;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+
+/**
+ * Co-occurrence of the query terms with the terms of the feedback documents, which the local clusters are built
+ * from.
+ * <p>
+ * Terms are interned to int ids and every document is walked once per query term, so only pairs of terms that
+ * actually occur together are visited. Values are accumulated per (query term, co-term) pair in a
+ * {@link TermPairAccumulator}.
+ */
+class Cooccurrence {
+    // query terms get the first ids, then the terms of the documents in the order they are walked
+    private final TermDictionary terms = new TermDictionary();
+    private final int[] queryTerms;
+    // per feedback document: its term ids, their values and the value of every query term, 0 if absent
+    private final List<int[]> docTerms = new ArrayList<int[]>();
+    private final List<int[]> docValues = new ArrayList<int[]>();
+    private final List<int[]> docQueryValues = new ArrayList<int[]>();
+
+    /**
+     * @param queryTerms query terms, in the order the clusters walk them
+     * @param docVector  feedback documents, term to frequency or term to position depending on the cluster
+     */
+    Cooccurrence(List<String> queryTerms, Vector<QueryDoc> docVector) {
+        this.queryTerms = new int[queryTerms.size()];
+        for (int q = 0; q < this.queryTerms.length; q++) {
+            this.queryTerms[q] = terms.intern(queryTerms.get(q));
+        }
+        for (QueryDoc doc : docVector) {
+            int[] termIds = new int[doc.stems.size()];
+            int[] values = new int[doc.stems.size()];
+            int i = 0;
+            for (Map.Entry<String, Integer> entry : doc.stems.entrySet()) {
+                termIds[i] = terms.intern(entry.getKey());
+                values[i++] = entry.getValue();
+            }
+            int[] queryValues = new int[this.queryTerms.length];
+            for (int q = 0; q < queryValues.length; q++) {
+                Integer value = doc.stems.get(queryTerms.get(q));
+                queryValues[q] = value == null ? 0 : value;
+            }
+            docTerms.add(termIds);
+            docValues.add(values);
+            docQueryValues.add(queryValues);
+        }
+    }
+
+    String term(int id) {
+        return terms.term(id);
+    }
+
+    /**
+     * @return id of the term, -1 if it is neither a query term nor in any of the documents
+     */
+    int id(String term) {
+        return terms.id(term);
+    }
+
+    /**
+     * Association clusters, documents hold term frequencies. For query term q and co-term v with
+     * c(u,v) = sum of f(u)*f(v) over the documents the value is c(q,v) / (c(q,v) + c(q,q) + c(v,v)).
+     *
+     * @return value of every (query term, co-term) pair
+     */
+    TermPairAccumulator association() {
+        TermPairAccumulator pairs = new TermPairAccumulator();
+        float[] self = new float[terms.size()];
+        for (int d = 0; d < docTerms.size(); d++) {
+            int[] termIds = docTerms.get(d);
+            int[] values = docValues.get(d);
+            int[] queryValues = docQueryValues.get(d);
+            for (int i = 0; i < termIds.length; i++) {
+                self[termIds[i]] += values[i] * values[i];
+            }
+            for (int q = 0; q < queryTerms.length; q++) {
+                if (queryValues[q] == 0) {
+                    continue;
+                }
+                for (int i = 0; i < termIds.length; i++) {
+                    pairs.add(queryTerms[q], termIds[i], queryValues[q] * values[i]);
+                }
+            }
+        }
+        pairs.update((queryTerm, coTerm, value) -> value / (value + self[queryTerm] + self[coTerm]));
+        return pairs;
+    }
+
+    /**
+     * Metric clusters, documents hold the position of every term. A pair adds 1 / distance for every document it
+     * occurs in, the value is half the sum. A pair of two query terms belongs to the one that comes first and counts
+     * from both sides.
+     *
+     * @return value of every (query term, co-term) pair
+     */
+    TermPairAccumulator metric() {
+        TermPairAccumulator pairs = new TermPairAccumulator();
+        int[] queryIndex = new int[terms.size()];
+        for (int q = 0; q < queryTerms.length; q++) {
+            queryIndex[queryTerms[q]] = q + 1;
+        }
+        for (int d = 0; d < docTerms.size(); d++) {
+            int[] termIds = docTerms.get(d);
+            int[] values = docValues.get(d);
+            int[] queryValues = docQueryValues.get(d);
+            for (int q = 0; q < queryTerms.length; q++) {
+                if (queryValues[q] == 0) {
+                    continue;
+                }
+                for (int i = 0; i < termIds.length; i++) {
+                    float distance = Math.abs(queryValues[q] - values[i]);
+                    float value = distance != 0 ? 1 / distance : 0;
+                    int other = queryIndex[termIds[i]] - 1;
+                    if (other >= 0 && other < q) {
+                        pairs.add(queryTerms[other], queryTerms[q], value);
+                    } else {
+                        pairs.add(queryTerms[q], termIds[i], value);
+                    }
+                }
+            }
+        }
+        pairs.update((queryTerm, coTerm, value) -> value / 2);
+        return pairs;
+    }
+}
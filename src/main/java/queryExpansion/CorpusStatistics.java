@@ -0,0 +1,79 @@
+package queryExpansion;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.AlreadyClosedException;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Document frequencies of the contents field over the whole index, for weighting expansion terms by how rare they are
+ * in the collection rather than in the few feedback documents.
+ * <p>
+ * There is one instance per index reader. A term is looked up in the terms dictionary the first time it is weighted
+ * and kept until the reader is closed, so the terms every expansion sees cost a map lookup after that.
+ */
+public class CorpusStatistics {
+    // bounds the memory of a long-lived reader, terms past it are looked up every time
+    private static final int MAX_CACHED_TERMS = 100000;
+    private static final ConcurrentHashMap<IndexReader.CacheKey, CorpusStatistics> BY_READER =
+            new ConcurrentHashMap<>();
+
+    private final IndexReader reader;
+    private final int docCount;
+    private final ConcurrentHashMap<String, Integer> docFreqs = new ConcurrentHashMap<>();
+
+    private CorpusStatistics(IndexReader reader) throws IOException {
+        this.reader = reader;
+        int fieldDocCount = reader.getDocCount(FeedbackTerms.FIELD);
+        this.docCount = fieldDocCount > 0 ? fieldDocCount : reader.maxDoc();
+    }
+
+    /**
+     * @return statistics of the reader, shared by every request on it
+     */
+    public static CorpusStatistics of(IndexReader reader) throws IOException {
+        IndexReader.CacheHelper cacheHelper = reader.getReaderCacheHelper();
+        if (cacheHelper == null) {
+            return new CorpusStatistics(reader);
+        }
+        IndexReader.CacheKey key = cacheHelper.getKey();
+        CorpusStatistics statistics = BY_READER.get(key);
+        if (statistics == null) {
+            statistics = new CorpusStatistics(reader);
+            CorpusStatistics previous = BY_READER.putIfAbsent(key, statistics);
+            if (previous != null) {
+                return previous;
+            }
+            try {
+                cacheHelper.addClosedListener(BY_READER::remove);
+            } catch (AlreadyClosedException e) {
+                BY_READER.remove(key);
+                throw e;
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * @return number of documents with contents
+     */
+    public int docCount() {
+        return docCount;
+    }
+
+    /**
+     * @return number of documents the term occurs in, 0 if it is not in the index
+     */
+    public int docFreq(String term) throws IOException {
+        Integer docFreq = docFreqs.get(term);
+        if (docFreq == null) {
+            docFreq = reader.docFreq(new Term(FeedbackTerms.FIELD, term));
+            if (docFreqs.size() < MAX_CACHED_TERMS) {
+                docFreqs.put(term, docFreq);
+            }
+        }
+        return docFreq;
+    }
+}
@@ -0,0 +1,83 @@
+package queryExpansion;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Weighted terms of an expanded query, in the order they were picked.
+ * <p>
+ * The query is built from the terms directly instead of joining them into a string for the query parser, so the
+ * weights computed by the expansion method are kept and the terms are not analyzed a second time. Terms are expected
+ * to be analyzed already, they come from term vectors or the analyzer of the index.
+ */
+public class ExpandedQuery {
+    private final String field;
+    private final LinkedHashMap<String, Float> weights = new LinkedHashMap<String, Float>();
+
+    /**
+     * @param field field the terms are searched in
+     */
+    public ExpandedQuery(String field) {
+        this.field = field;
+    }
+
+    /**
+     * Adds a term. A term added again gets the sum of its weights, which scores the same as the term repeated in a
+     * parsed query.
+     */
+    public ExpandedQuery add(String term, float weight) {
+        weights.merge(term, weight, Float::sum);
+        return this;
+    }
+
+    /**
+     * @return the terms in the order they were first added
+     */
+    public List<String> getTerms() {
+        return new ArrayList<String>(weights.keySet());
+    }
+
+    /**
+     * @return weight of the term, 0 if it is not part of the query
+     */
+    public float getWeight(String term) {
+        return weights.getOrDefault(term, 0f);
+    }
+
+    public boolean contains(String term) {
+        return weights.containsKey(term);
+    }
+
+    public boolean isEmpty() {
+        return weights.isEmpty();
+    }
+
+    /**
+     * @return a boolean query with a SHOULD clause per term, boosted by its weight unless that is 1
+     */
+    public Query toQuery() {
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        for (Map.Entry<String, Float> entry : weights.entrySet()) {
+            Query termQuery = new TermQuery(new Term(field, entry.getKey()));
+            if (entry.getValue() != 1f) {
+                termQuery = new BoostQuery(termQuery, entry.getValue());
+            }
+            builder.add(termQuery, BooleanClause.Occur.SHOULD);
+        }
+        return builder.build();
+    }
+
+    @Override
+    public String toString() {
+        return weights.toString();
+    }
+}
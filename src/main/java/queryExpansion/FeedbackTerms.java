@@ -0,0 +1,199 @@
+package queryExpansion;
+
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SynonymQuery;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.util.BytesRef;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads the terms of feedback documents from the term vectors written at index time, so expansion does not have to
+ * load and re-analyze the document text.
+ * <p>
+ * The feedback documents of a query are independent of each other, so they are read in parallel on a pool shared by
+ * all requests. Readers and analyzers are safe to use from several threads, analyzers keep their token streams per
+ * thread.
+ */
+class FeedbackTerms {
+    static final String FIELD = "contents";
+    private static final ExecutorService POOL = newPool(Runtime.getRuntime().availableProcessors());
+
+    private FeedbackTerms() {
+    }
+
+    private static ExecutorService newPool(int threads) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "feedback-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Applies a function to each of the top feedback documents in parallel.
+     *
+     * @param hits  hits of the regular search, best first
+     * @param count how many of the top hits to use
+     * @return the results in the order of the hits, so merging them gives the same result on every run
+     * @throws IOException if reading any of the documents failed
+     */
+    static <T> List<T> forEachDoc(ScoreDoc[] hits, int count, DocFunction<T> function) throws IOException {
+        int docs = Math.min(count, hits.length);
+        List<T> results = new ArrayList<T>(docs);
+        if (docs == 1) {
+            results.add(function.apply(hits[0].doc));
+            return results;
+        }
+        List<Future<T>> futures = new ArrayList<Future<T>>(docs);
+        for (int i = 0; i < docs; i++) {
+            int doc = hits[i].doc;
+            futures.add(POOL.submit(() -> function.apply(doc)));
+        }
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            cancel(futures);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while reading feedback documents");
+        } catch (ExecutionException e) {
+            cancel(futures);
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+        return results;
+    }
+
+    private static void cancel(List<? extends Future<?>> futures) {
+        for (Future<?> future : futures) {
+            future.cancel(false);
+        }
+    }
+
+    /**
+     * The terms of a parsed query are analyzed already, analyzing them again would stem stemmed terms a second time.
+     *
+     * @return terms of the contents field the query looks for, in the order they appear, terms it excludes left out
+     */
+    static List<String> queryTerms(Query query) {
+        List<String> terms = new ArrayList<String>();
+        collectTerms(query, terms);
+        return terms;
+    }
+
+    private static void collectTerms(Query query, List<String> terms) {
+        if (query instanceof BoostQuery) {
+            collectTerms(((BoostQuery) query).getQuery(), terms);
+        } else if (query instanceof BooleanQuery) {
+            for (BooleanClause clause : (BooleanQuery) query) {
+                if (clause.getOccur() != BooleanClause.Occur.MUST_NOT) {
+                    collectTerms(clause.getQuery(), terms);
+                }
+            }
+        } else if (query instanceof TermQuery) {
+            addTerm(((TermQuery) query).getTerm(), terms);
+        } else if (query instanceof PhraseQuery) {
+            for (Term term : ((PhraseQuery) query).getTerms()) {
+                addTerm(term, terms);
+            }
+        } else if (query instanceof SynonymQuery) {
+            for (Term term : ((SynonymQuery) query).getTerms()) {
+                addTerm(term, terms);
+            }
+        }
+    }
+
+    private static void addTerm(Term term, List<String> terms) {
+        if (FIELD.equals(term.field())) {
+            terms.add(term.text());
+        }
+    }
+
+    /**
+     * @return term vector of the contents field, null if the document was indexed without one
+     */
+    static Terms termVector(IndexSearcher searcher, int doc) throws IOException {
+        return searcher.getIndexReader().getTermVector(doc, FIELD);
+    }
+
+    /**
+     * @return every term of the term vector with its frequency in the document
+     */
+    static HashMap<String, Integer> frequencies(Terms termVector) throws IOException {
+        HashMap<String, Integer> frequencies = new HashMap<String, Integer>();
+        TermsEnum termsEnum = termVector.iterator();
+        BytesRef term;
+        while ((term = termsEnum.next()) != null) {
+            frequencies.put(term.utf8ToString(), (int) termsEnum.totalTermFreq());
+        }
+        return frequencies;
+    }
+
+    /**
+     * @return the terms of the term vector in the order they first occur in the document, null if the term vector
+     * has no positions
+     */
+    static List<String> inOrderOfOccurrence(Terms termVector) throws IOException {
+        if (!termVector.hasPositions()) {
+            return null;
+        }
+        List<String> terms = new ArrayList<String>();
+        List<Integer> firstPositions = new ArrayList<Integer>();
+        TermsEnum termsEnum = termVector.iterator();
+        PostingsEnum postings = null;
+        BytesRef term;
+        while ((term = termsEnum.next()) != null) {
+            postings = termsEnum.postings(postings, PostingsEnum.POSITIONS);
+            postings.nextDoc();
+            terms.add(term.utf8ToString());
+            firstPositions.add(postings.nextPosition());   // positions come in increasing order
+        }
+        Integer[] order = new Integer[terms.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(firstPositions.get(a), firstPositions.get(b)));
+        List<String> ordered = new ArrayList<String>(terms.size());
+        for (Integer i : order) {
+            ordered.add(terms.get(i));
+        }
+        return ordered;
+    }
+
+    /**
+     * Extracts something from one feedback document.
+     */
+    interface DocFunction<T> {
+        T apply(int doc) throws IOException;
+    }
+}
@@ -0,0 +1,311 @@
+package queryExpansion;
+
+import org.apache.lucene.search.Query;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Strongest neighbors of every term of the corpus, computed offline by {@code indexer.BuildCooccurrence} and read
+ * from a memory-mapped file, so expanding a query is a lookup per query term instead of clustering the feedback
+ * documents.
+ * <p>
+ * File layout, big-endian:
+ * <pre>
+ * int magic, int version, int term count, int neighbors per term
+ * int[term count + 1]  offset of every term in the term bytes, and their end
+ * byte[]               the terms, UTF-8, sorted by their bytes so a term is found by binary search
+ * padding to a multiple of 4
+ * per term: int[neighbors] neighbor ids, -1 past the last one, then float[neighbors] their weights, highest first
+ * </pre>
+ * A term's id is its position in the sorted terms. The whole file is mapped at once, so it is limited to 2GB. Reading
+ * uses absolute gets only, so one instance can be shared by any number of threads.
+ */
+public class GlobalCooccurrence {
+    public static final String FILE_NAME = "cooccurrence.bin";
+    private static final int MAGIC = 0x434F4F43;    // "COOC"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+
+    private final ByteBuffer buffer;
+    private final int termCount;
+    private final int neighbors;
+    private final int termsStart;
+    private final int rowsStart;
+
+    private GlobalCooccurrence(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("not a co-occurrence file of version " + VERSION);
+        }
+        this.termCount = buffer.getInt(8);
+        this.neighbors = buffer.getInt(12);
+        this.termsStart = HEADER_BYTES + 4 * (termCount + 1);
+        this.rowsStart = align(termsStart + termOffset(termCount));
+        if (rowsStart + (long) termCount * neighbors * 8 > buffer.capacity()) {
+            throw new IOException("co-occurrence file is truncated");
+        }
+    }
+
+    /**
+     * Maps a file written by a {@link Writer}.
+     *
+     * @throws IOException if the file cannot be read or is not a co-occurrence file
+     */
+    public static GlobalCooccurrence open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new GlobalCooccurrence(buffer);
+        }
+    }
+
+    private static int align(int position) {
+        return (position + 3) & ~3;
+    }
+
+    private int termOffset(int id) {
+        return buffer.getInt(HEADER_BYTES + 4 * id);
+    }
+
+    public int size() {
+        return termCount;
+    }
+
+    /**
+     * @return id of the term, -1 if it has no neighbors in the file
+     */
+    public int id(String term) {
+        byte[] bytes = term.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = termCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareTerm(mid, bytes);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compares the stored term with {@code bytes} unsigned, the order the terms were sorted in.
+     */
+    private int compareTerm(int id, byte[] bytes) {
+        int start = termsStart + termOffset(id);
+        int length = termsStart + termOffset(id + 1) - start;
+        int common = Math.min(length, bytes.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = Integer.compare(buffer.get(start + i) & 0xFF, bytes[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(length, bytes.length);
+    }
+
+    public String term(int id) {
+        int start = termsStart + termOffset(id);
+        byte[] bytes = new byte[termsStart + termOffset(id + 1) - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return ids of the neighbors of a term, strongest first
+     */
+    public int[] neighbors(int id) {
+        int row = rowsStart + id * neighbors * 8;
+        int count = 0;
+        while (count < neighbors && buffer.getInt(row + 4 * count) >= 0) {
+            count++;
+        }
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = buffer.getInt(row + 4 * i);
+        }
+        return ids;
+    }
+
+    /**
+     * @return weights of the neighbors of a term, in the order of {@link #neighbors(int)}
+     */
+    public float[] weights(int id) {
+        int[] ids = neighbors(id);
+        int row = rowsStart + id * neighbors * 8 + neighbors * 4;
+        float[] weights = new float[ids.length];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = buffer.getFloat(row + 4 * i);
+        }
+        return weights;
+    }
+
+    /**
+     * Expands a query with the strongest neighbors of each of its terms, leaving out terms that were already picked,
+     * followed by the query terms. Like the local clusters every term gets weight 1.
+     *
+     * @param query        parsed query, terms of other fields are ignored
+     * @param perQueryTerm how many neighbors to pick per query term
+     */
+    public ExpandedQuery expand(Query query, int perQueryTerm) {
+        Set<String> queryTerms = new LinkedHashSet<String>(FeedbackTerms.queryTerms(query));
+        ExpandedQuery expandedQuery = new ExpandedQuery(FeedbackTerms.FIELD);
+        for (String queryTerm : queryTerms) {
+            int id = id(queryTerm);
+            if (id < 0) {
+                continue;
+            }
+            int picked = 0;
+            for (int neighbor : neighbors(id)) {
+                if (picked == perQueryTerm) {
+                    break;
+                }
+                String term = term(neighbor);
+                if (!expandedQuery.contains(term)) {
+                    expandedQuery.add(term, 1f);
+                    picked++;
+                }
+            }
+        }
+        for (String queryTerm : queryTerms) {
+            if (!expandedQuery.contains(queryTerm)) {
+                expandedQuery.add(queryTerm, 1f);
+            }
+        }
+        return expandedQuery;
+    }
+
+    /**
+     * Writes a co-occurrence file. The terms are given up front, then the neighbors of every term in the order of the
+     * term ids.
+     * <p>
+     * The file is written next to the target under a temporary name and moved over it by {@link #finish()}, so a
+     * searcher that has the old file mapped keeps reading it and never maps a half-written one.
+     */
+    public static class Writer implements Closeable {
+        private final Path file;
+        private final Path tempFile;
+        private final DataOutputStream out;
+        private final int termCount;
+        private final int neighbors;
+        private int rows;
+
+        /**
+         * @param terms     every term that can be looked up, sorted by their UTF-8 bytes
+         * @param neighbors neighbors kept per term
+         * @throws IllegalArgumentException if the terms are not sorted
+         */
+        public Writer(Path file, List<String> terms, int neighbors) throws IOException {
+            List<byte[]> termBytes = new ArrayList<byte[]>(terms.size());
+            for (String term : terms) {
+                byte[] bytes = term.getBytes(StandardCharsets.UTF_8);
+                if (!termBytes.isEmpty() && compare(termBytes.get(termBytes.size() - 1), bytes) >= 0) {
+                    throw new IllegalArgumentException("terms are not sorted at " + term);
+                }
+                termBytes.add(bytes);
+            }
+            this.termCount = terms.size();
+            this.neighbors = neighbors;
+            this.file = file;
+            this.tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile), 1 << 16));
+            try {
+                writeTerms(termBytes);
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        private void writeTerms(List<byte[]> termBytes) throws IOException {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(termCount);
+            out.writeInt(neighbors);
+            int offset = 0;
+            out.writeInt(offset);
+            for (byte[] bytes : termBytes) {
+                offset += bytes.length;
+                out.writeInt(offset);
+            }
+            for (byte[] bytes : termBytes) {
+                out.write(bytes);
+            }
+            int termsEnd = HEADER_BYTES + 4 * (termCount + 1) + offset;
+            for (int i = termsEnd; i < align(termsEnd); i++) {
+                out.writeByte(0);
+            }
+        }
+
+        private static int compare(byte[] a, byte[] b) {
+            int common = Math.min(a.length, b.length);
+            for (int i = 0; i < common; i++) {
+                int cmp = Integer.compare(a[i] & 0xFF, b[i] & 0xFF);
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+            return Integer.compare(a.length, b.length);
+        }
+
+        /**
+         * Writes the neighbors of the next term, at most {@code neighbors} of them are kept.
+         *
+         * @param ids     neighbor ids, strongest first
+         * @param weights their weights
+         * @param count   how many of the arrays are used
+         */
+        public void addRow(int[] ids, float[] weights, int count) throws IOException {
+            if (rows == termCount) {
+                throw new IllegalStateException("every term already has its neighbors");
+            }
+            for (int i = 0; i < neighbors; i++) {
+                out.writeInt(i < count ? ids[i] : -1);
+            }
+            for (int i = 0; i < neighbors; i++) {
+                out.writeFloat(i < count ? weights[i] : 0);
+            }
+            rows++;
+        }
+
+        /**
+         * Writes empty rows for the terms left and moves the file over the target.
+         */
+        public void finish() throws IOException {
+            while (rows < termCount) {
+                addRow(new int[0], new float[0], 0);
+            }
+            out.close();
+            Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        /**
+         * Deletes the temporary file unless {@link #finish()} moved it, the target is left as it was.
+         */
+        @Override
+        public void close() throws IOException {
+            out.close();
+            Files.deleteIfExists(tempFile);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package queryExpansion;
+
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.KeywordAttribute;
+
+import java.io.IOException;
+
+/**
+ * Replaces every token with its {@link Stemmer Porter stem}. The stem is computed in the buffer of the term attribute,
+ * so nothing is allocated per token. Tokens marked as keywords are left alone.
+ * <p>
+ * The stemmer expects lower case input, put the filter after a {@code LowerCaseFilter}.
+ */
+public final class PorterStemmerFilter extends TokenFilter {
+    private final CharTermAttribute termAttribute = addAttribute(CharTermAttribute.class);
+    private final KeywordAttribute keywordAttribute = addAttribute(KeywordAttribute.class);
+    private final Stemmer stemmer = new Stemmer();
+
+    public PorterStemmerFilter(TokenStream input) {
+        super(input);
+    }
+
+    @Override
+    public boolean incrementToken() throws IOException {
+        if (!input.incrementToken()) {
+            return false;
+        }
+        if (!keywordAttribute.isKeyword()) {
+            termAttribute.setLength(stemmer.stem(termAttribute.buffer(), termAttribute.length()));
+        }
+        return true;
+    }
+}
@@ -19,7 +19,10 @@ import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.util.BytesRef;
 
 import java.io.IOException;
 import java.io.StringReader;
@@ -76,6 +79,26 @@ public class QueryTermVector {
         }
     }
 
+    /**
+     * @param termVector term vector of a document, read instead of analyzing the document text again
+     */
+    public QueryTermVector(Terms termVector) throws IOException {
+        List<String> tmpList = new ArrayList<String>();
+        List<Integer> tmpFreqs = new ArrayList<Integer>();
+        // terms come sorted and without duplicates
+        TermsEnum termsEnum = termVector.iterator();
+        BytesRef term;
+        while ((term = termsEnum.next()) != null) {
+            tmpList.add(term.utf8ToString());
+            tmpFreqs.add((int) termsEnum.totalTermFreq());
+        }
+        terms = tmpList.toArray(terms);
+        termFreqs = new int[tmpFreqs.size()];
+        for (int i = 0; i < termFreqs.length; i++) {
+            termFreqs[i] = tmpFreqs.get(i);
+        }
+    }
+
     public String getField() {
         return null;
     }
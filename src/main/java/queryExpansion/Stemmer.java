@@ -479,4 +479,21 @@ class Stemmer {
         i_end = k + 1;
         i = 0;
     }
+
+    /**
+     * Stems a word in place, in the caller's buffer, without copying it or allocating anything. None of the steps
+     * makes a word longer, so the stem always fits.
+     *
+     * @param word   buffer holding the word, lower case, from index 0
+     * @param length length of the word
+     * @return length of the stem
+     */
+    public int stem(char[] word, int length) {
+        char[] buffer = b;
+        b = word;
+        i = length;
+        stem();
+        b = buffer;
+        return i_end;
+    }
 }
\ No newline at end of file
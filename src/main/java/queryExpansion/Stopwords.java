@@ -0,0 +1,61 @@
+package queryExpansion;
+
+import org.apache.lucene.analysis.CharArraySet;
+import org.apache.lucene.analysis.WordlistLoader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Words left out of the index, of queries and of expansions. The default list is the {@code stopwords.txt} resource,
+ * read once when it is first used. A file in the same format, one word per line and # for comments, can replace it.
+ * The sets are unmodifiable, so they are shared by every analyzer and request.
+ */
+public final class Stopwords {
+    private static final String RESOURCE = "/stopwords.txt";
+
+    private Stopwords() {
+    }
+
+    /**
+     * @return the default stopwords
+     */
+    public static CharArraySet defaults() {
+        return Defaults.SET;
+    }
+
+    /**
+     * @param file stopword file, null for the defaults
+     * @throws IOException if the file cannot be read
+     */
+    public static CharArraySet load(String file) throws IOException {
+        if (file == null) {
+            return defaults();
+        }
+        try (Reader reader = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+            return CharArraySet.unmodifiableSet(WordlistLoader.getWordSet(reader, "#"));
+        }
+    }
+
+    private static class Defaults {
+        static final CharArraySet SET = loadResource();
+
+        private static CharArraySet loadResource() {
+            try (InputStream in = Stopwords.class.getResourceAsStream(RESOURCE)) {
+                if (in == null) {
+                    throw new IllegalStateException(RESOURCE + " is missing from the classpath");
+                }
+                Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+                return CharArraySet.unmodifiableSet(WordlistLoader.getWordSet(reader, "#"));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package queryExpansion;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Dense int ids for terms, given out in the order the terms are first seen, and the term of every id.
+ * <p>
+ * Looking a term up is a hash lookup, so building the vocabulary of the feedback documents is linear in their terms,
+ * and everything past that, like co-occurrence counting, works on the ids. Not thread-safe, a dictionary is built by
+ * one request.
+ */
+public class TermDictionary {
+    private final HashMap<String, Integer> ids;
+    private final ArrayList<String> terms;
+
+    public TermDictionary() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize terms expected, to size the tables up front
+     */
+    public TermDictionary(int expectedSize) {
+        this.ids = new HashMap<String, Integer>(Math.max(16, expectedSize * 4 / 3 + 1));
+        this.terms = new ArrayList<String>(expectedSize);
+    }
+
+    /**
+     * @return id of the term, a new one if it was not seen before
+     */
+    public int intern(String term) {
+        Integer id = ids.get(term);
+        if (id == null) {
+            id = terms.size();
+            ids.put(term, id);
+            terms.add(term);
+        }
+        return id;
+    }
+
+    /**
+     * @return id of the term, -1 if it was never interned
+     */
+    public int id(String term) {
+        Integer id = ids.get(term);
+        return id == null ? -1 : id;
+    }
+
+    public boolean contains(String term) {
+        return ids.containsKey(term);
+    }
+
+    public String term(int id) {
+        return terms.get(id);
+    }
+
+    public int size() {
+        return terms.size();
+    }
+
+    /**
+     * @return the terms in the order of their ids
+     */
+    public List<String> terms() {
+        return Collections.unmodifiableList(terms);
+    }
+}
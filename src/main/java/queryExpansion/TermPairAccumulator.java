@@ -0,0 +1,224 @@
+package queryExpansion;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Float values keyed by a pair of term ids.
+ * <p>
+ * Both ids are packed into one long and kept in an open-addressing hash table, so adding to a pair allocates nothing
+ * and terms may contain any character, unlike keys of the form {@code term1 + "," + term2}. Call {@code clear()} to
+ * reuse the table.
+ */
+public class TermPairAccumulator {
+    private static final long EMPTY = -1L;     // ids are not negative, so no packed pair equals this
+    private static final int MIN_CAPACITY = 16;
+    private long[] keys;
+    private float[] values;
+    private int size;
+
+    public TermPairAccumulator() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * @param expectedPairs number of pairs to size the table for
+     */
+    public TermPairAccumulator(int expectedPairs) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * 3 < expectedPairs * 4) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    public static long pack(int first, int second) {
+        return ((long) first << 32) | (second & 0xFFFFFFFFL);
+    }
+
+    public static int first(long pair) {
+        return (int) (pair >>> 32);
+    }
+
+    public static int second(long pair) {
+        return (int) pair;
+    }
+
+    /**
+     * Adds to the value of a pair, a pair that is not there yet starts at 0.
+     */
+    public void add(int first, int second, float value) {
+        long key = pack(first, second);
+        int slot = slot(key);
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key;
+            values[slot] = value;
+            if (++size * 4 > keys.length * 3) {
+                rehash(keys.length << 1);
+            }
+        } else {
+            values[slot] += value;
+        }
+    }
+
+    /**
+     * @return value of the pair, 0 if it is not there
+     */
+    public float get(int first, int second) {
+        long key = pack(first, second);
+        int slot = slot(key);
+        return keys[slot] == EMPTY ? 0 : values[slot];
+    }
+
+    public boolean contains(int first, int second) {
+        return keys[slot(pack(first, second))] != EMPTY;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    /**
+     * Replaces the value of every pair.
+     */
+    public void update(PairFunction function) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY) {
+                values[slot] = function.apply(first(keys[slot]), second(keys[slot]), values[slot]);
+            }
+        }
+    }
+
+    /**
+     * @param first  the term whose pairs are ranked, usually a query term
+     * @param k      how many to return at most
+     * @param accept which second terms may be returned
+     * @return the second terms of the {@code k} highest pairs starting with {@code first}, highest first. Ties go to
+     * the lower id
+     */
+    public int[] topK(int first, int k, IntPredicate accept) {
+        TopK top = new TopK(k, this::compareSlots);
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY && first(keys[slot]) == first && accept.test(second(keys[slot]))) {
+                top.offer(slot);
+            }
+        }
+        int[] slots = top.toSortedArray();
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = second(keys[slots[i]]);
+        }
+        return slots;
+    }
+
+    /**
+     * @return the {@code k} highest pairs of the whole table, packed, highest first. Ties go to the lower pair
+     */
+    public long[] topPairs(int k) {
+        TopK top = new TopK(k, this::compareSlots);
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY) {
+                top.offer(slot);
+            }
+        }
+        int[] slots = top.toSortedArray();
+        long[] pairs = new long[slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            pairs[i] = keys[slots[i]];
+        }
+        return pairs;
+    }
+
+    /**
+     * Ranks the pairs of a range of first terms in one pass over the table, instead of one pass per term.
+     *
+     * @param firstFrom lowest first term to rank
+     * @param firstTo   first term after the range
+     * @param k         how many pairs to pass on per first term at most
+     * @param consumer  receives the {@code k} highest pairs of every first term in the range, by first term and
+     *                  highest first. Ties go to the lower id
+     */
+    public void topKByFirst(int firstFrom, int firstTo, int k, PairConsumer consumer) {
+        TopK[] tops = new TopK[firstTo - firstFrom];
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY && first(keys[slot]) >= firstFrom && first(keys[slot]) < firstTo) {
+                int index = first(keys[slot]) - firstFrom;
+                if (tops[index] == null) {
+                    tops[index] = new TopK(k, this::compareSlots);
+                }
+                tops[index].offer(slot);
+            }
+        }
+        for (TopK top : tops) {
+            if (top == null) {
+                continue;
+            }
+            for (int slot : top.toSortedArray()) {
+                consumer.accept(first(keys[slot]), second(keys[slot]), values[slot]);
+            }
+        }
+    }
+
+    private int compareSlots(int slot1, int slot2) {
+        return compare(keys[slot1], values[slot1], keys[slot2], values[slot2]);
+    }
+
+    /**
+     * Orders pairs by value, highest first, then by key.
+     */
+    static int compare(long key1, float value1, long key2, float value2) {
+        int byValue = Float.compare(value2, value1);
+        return byValue != 0 ? byValue : Long.compare(key1, key2);
+    }
+
+    private int slot(long key) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int mix(long key) {
+        key *= 0x9E3779B97F4A7C15L;
+        return (int) (key ^ (key >>> 32));
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new float[capacity];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        float[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * New value of a pair from its terms and current value.
+     */
+    public interface PairFunction {
+        float apply(int first, int second, float value);
+    }
+
+    /**
+     * Receives a pair and its value.
+     */
+    public interface PairConsumer {
+        void accept(int first, int second, float value);
+    }
+}
@@ -0,0 +1,47 @@
+package queryExpansion;
+
+import java.util.Arrays;
+
+/**
+ * Weights of terms, summed per term. Terms get ids from a {@link TermDictionary} and their weights sit in a float array
+ * indexed by the id, so adding to a weight is one hash lookup and no boxing.
+ */
+class TermWeights {
+    private final TermDictionary terms = new TermDictionary();
+    private float[] weights = new float[64];
+
+    void add(String term, float weight) {
+        int id = terms.intern(term);
+        if (id == weights.length) {
+            weights = Arrays.copyOf(weights, weights.length * 2);
+        }
+        weights[id] += weight;
+    }
+
+    int size() {
+        return terms.size();
+    }
+
+    String term(int id) {
+        return terms.term(id);
+    }
+
+    float weight(int id) {
+        return weights[id];
+    }
+
+    /**
+     * @return ids of the {@code k} terms with the highest weight, highest first. Equal weights keep the order the
+     * terms were first added in
+     */
+    int[] top(int k) {
+        TopK top = new TopK(Math.min(k, terms.size()), (a, b) -> {
+            int byWeight = Float.compare(weights[b], weights[a]);
+            return byWeight != 0 ? byWeight : Integer.compare(a, b);
+        });
+        for (int id = 0; id < terms.size(); id++) {
+            top.offer(id);
+        }
+        return top.toSortedArray();
+    }
+}
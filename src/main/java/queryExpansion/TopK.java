@@ -0,0 +1,96 @@
+package queryExpansion;
+
+/**
+ * Selects the {@code k} best of the ids offered to it.
+ * <p>
+ * The ids kept so far sit in a bounded heap with the worst of them on top, so an id that does not beat it is dropped
+ * after one comparison and selecting from n candidates takes O(n log k). Ids stand for whatever the caller ranks,
+ * e.g. slots of a {@link TermPairAccumulator} or positions in a list.
+ */
+public class TopK {
+    private final int[] heap;
+    private final Order order;
+    private int size;
+
+    /**
+     * @param k     how many ids to keep at most
+     * @param order ranking of the ids, best first. It should not return 0 for different ids, or which of two equal
+     *              ids is kept is undefined
+     */
+    public TopK(int k, Order order) {
+        this.heap = new int[k];
+        this.order = order;
+    }
+
+    public void offer(int id) {
+        if (size < heap.length) {
+            heap[size] = id;
+            siftUp(size++);
+        } else if (size > 0 && order.compare(id, heap[0]) < 0) {
+            heap[0] = id;
+            siftDown(0);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the ids kept, best first
+     */
+    public int[] toSortedArray() {
+        int[] sorted = new int[size];
+        int[] kept = heap.clone();
+        int remaining = size;
+        while (remaining > 0) {
+            sorted[--remaining] = kept[0];
+            kept[0] = kept[remaining];
+            siftDown(kept, remaining, 0);
+        }
+        return sorted;
+    }
+
+    private void siftUp(int i) {
+        int id = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (order.compare(heap[parent], id) >= 0) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = id;
+    }
+
+    private void siftDown(int i) {
+        siftDown(heap, size, i);
+    }
+
+    private void siftDown(int[] heap, int size, int i) {
+        int id = heap[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && order.compare(heap[child + 1], heap[child]) > 0) {
+                child++;
+            }
+            if (order.compare(id, heap[child]) >= 0) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = id;
+    }
+
+    /**
+     * Ranking of two ids, negative if the first is better.
+     */
+    public interface Order {
+        int compare(int id1, int id2);
+    }
+}
@@ -0,0 +1,112 @@
+package searcher;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A thread-safe cache bounded by the total weight of its entries, each kept for at most a fixed time. When it is full
+ * the least recently used entries are evicted. Without a weigher every entry weighs 1, so the bound is an entry count.
+ */
+public class BoundedCache<K, V> {
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final long maxWeight;
+    private final long ttlNanos;
+    private final Weigher<K, V> weigher;
+    private long weight;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param maxEntries how many entries to keep, 0 keeps none
+     * @param ttlMillis  how long an entry is served after it was put
+     */
+    public BoundedCache(int maxEntries, long ttlMillis) {
+        this(maxEntries, ttlMillis, (key, value) -> 1);
+    }
+
+    /**
+     * @param maxWeight total weight of the entries to keep, 0 keeps none
+     * @param ttlMillis how long an entry is served after it was put
+     * @param weigher   weight of an entry, e.g. its approximate size in bytes
+     */
+    public BoundedCache(long maxWeight, long ttlMillis, Weigher<K, V> weigher) {
+        this.maxWeight = maxWeight;
+        this.ttlNanos = ttlMillis * 1_000_000;
+        this.weigher = weigher;
+    }
+
+    /**
+     * @return the value, null if there is none or it expired
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (System.nanoTime() - entry.created > ttlNanos) {
+            entries.remove(key);
+            weight -= entry.weight;
+            evictions++;
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value;
+    }
+
+    /**
+     * Adds or replaces an entry. An entry heavier than the whole cache is not kept, and the one it replaces is removed.
+     */
+    public synchronized void put(K key, V value) {
+        long entryWeight = weigher.weigh(key, value);
+        Entry<V> previous = entries.remove(key);
+        if (previous != null) {
+            weight -= previous.weight;
+        }
+        if (entryWeight > maxWeight) {
+            return;
+        }
+        entries.put(key, new Entry<>(value, entryWeight, System.nanoTime()));
+        weight += entryWeight;
+        Iterator<Map.Entry<K, Entry<V>>> eldest = entries.entrySet().iterator();
+        while (weight > maxWeight) {
+            weight -= eldest.next().getValue().weight;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Removes every entry, the hit and miss counts are kept.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    public synchronized CacheStats stats() {
+        return new CacheStats(entries.size(), weight, hits, misses, evictions);
+    }
+
+    /**
+     * Weight of an entry, counted against the maximum weight of the cache.
+     */
+    public interface Weigher<K, V> {
+        long weigh(K key, V value);
+    }
+
+    private static class Entry<V> {
+        final V value;
+        final long weight;
+        final long created;
+
+        Entry(V value, long weight, long created) {
+            this.value = value;
+            this.weight = weight;
+            this.created = created;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package searcher;
+
+/**
+ * Counters of a {@link BoundedCache} at one point in time.
+ */
+public class CacheStats {
+    private final int size;
+    private final long weight;
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+
+    public CacheStats(int size, long weight, long hits, long misses, long evictions) {
+        this.size = size;
+        this.weight = weight;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+    }
+
+    // getters required for jackson (json conversion) to work
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return total weight of the entries, their number unless the cache weighs them
+     */
+    public long getWeight() {
+        return weight;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return "size=" + size + ", weight=" + weight + ", hits=" + hits + ", misses=" + misses
+                + ", evictions=" + evictions;
+    }
+}
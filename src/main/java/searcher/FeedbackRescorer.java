@@ -0,0 +1,22 @@
+package searcher;
+
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryRescorer;
+
+/**
+ * Reorders the hits of the original query by the expanded query, so pseudo-relevance feedback takes one search of the
+ * index instead of two: the expanded query, which has many more clauses, only scores the candidates.
+ * <p>
+ * Candidates get the score of the expanded query alone, the same a full search with it gives them, and the reordered
+ * candidates are the whole result set, so every page is ranked the same way. Candidates it does not match go last.
+ */
+class FeedbackRescorer extends QueryRescorer {
+    FeedbackRescorer(Query expandedQuery) {
+        super(expandedQuery);
+    }
+
+    @Override
+    protected float combine(float firstPassScore, boolean secondPassMatches, float secondPassScore) {
+        return secondPassMatches ? secondPassScore : 0;
+    }
+}
@@ -0,0 +1,74 @@
+package searcher;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.util.BytesRef;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Loads the path, title and url of a hit and nothing else.
+ * <p>
+ * Stored fields are read with a field selector, so the stored contents of the document are skipped. With doc values
+ * the stored fields are not touched at all; documents indexed before the doc values were added fall back to the
+ * stored fields.
+ */
+class HitLoader {
+    private static final Set<String> FIELDS = Collections.unmodifiableSet(
+            new HashSet<>(Arrays.asList("path", "title", "url")));
+    private final boolean fromDocValues;
+
+    /**
+     * @param fromDocValues read the fields from their binary doc values when the index has them
+     */
+    HitLoader(boolean fromDocValues) {
+        this.fromDocValues = fromDocValues;
+    }
+
+    Hit load(IndexSearcher searcher, int doc) throws IOException {
+        if (fromDocValues) {
+            Hit hit = loadFromDocValues(searcher, doc);
+            if (hit != null) {
+                return hit;
+            }
+        }
+        Document document = searcher.doc(doc, FIELDS);
+        String path = document.get("path");
+        String title = document.get("title");    // will be null if title doesn't exist
+        String url = document.get("url");        // will be null if url doesn't exist
+        return new Hit(path, title, url);
+    }
+
+    /**
+     * @return the hit, null if its segment has no doc values for the path
+     */
+    private static Hit loadFromDocValues(IndexSearcher searcher, int doc) throws IOException {
+        List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
+        LeafReaderContext leaf = leaves.get(ReaderUtil.subIndex(doc, leaves));
+        int leafDoc = doc - leaf.docBase;
+        String path = binaryValue(leaf.reader(), "path", leafDoc);
+        if (path == null) {
+            return null;
+        }
+        return new Hit(path, binaryValue(leaf.reader(), "title", leafDoc), binaryValue(leaf.reader(), "url", leafDoc));
+    }
+
+    private static String binaryValue(LeafReader reader, String field, int doc) throws IOException {
+        // doc values iterators only move forward, so every lookup gets its own
+        BinaryDocValues values = reader.getBinaryDocValues(field);
+        if (values == null || !values.advanceExact(doc)) {
+            return null;
+        }
+        BytesRef value = values.binaryValue();
+        return value.utf8ToString();
+    }
+}
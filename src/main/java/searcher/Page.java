@@ -0,0 +1,126 @@
+package searcher;
+
+import org.apache.lucene.search.ScoreDoc;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+/**
+ * Which hits of a search to return: a page number and size, or the hits after a cursor returned with the previous
+ * page.
+ * <p>
+ * A cursor holds the score and document of the last hit of its page, so the next page is collected with
+ * {@code IndexSearcher.searchAfter} instead of collecting and skipping every hit before it. After the index is
+ * refreshed a cursor still continues by score, but documents that changed may be skipped or repeated.
+ */
+public class Page {
+    public static final int MAX_SIZE = 100;
+    // deepest hit a page number can reach, deeper pages need a cursor
+    public static final int MAX_WINDOW = 10000;
+
+    private final int number;
+    private final int size;
+    private final ScoreDoc after;
+
+    private Page(int number, int size, ScoreDoc after) {
+        if (size < 1 || size > MAX_SIZE) {
+            throw new IllegalArgumentException("page size must be between 1 and " + MAX_SIZE);
+        }
+        this.number = number;
+        this.size = size;
+        this.after = after;
+    }
+
+    /**
+     * @param number page number, 1 for the first page
+     * @param size   hits per page
+     * @throws IllegalArgumentException if the page is out of range
+     */
+    public static Page number(int number, int size) {
+        if (number < 1 || (long) number * size > MAX_WINDOW) {
+            throw new IllegalArgumentException("page must be between 1 and " + MAX_WINDOW / Math.max(size, 1));
+        }
+        return new Page(number, size, null);
+    }
+
+    /**
+     * @param cursor cursor returned with the previous page
+     * @param size   hits per page
+     * @throws IllegalArgumentException if the cursor is not one returned by {@link #cursor}
+     */
+    public static Page after(String cursor, int size) {
+        ByteBuffer bytes;
+        try {
+            bytes = ByteBuffer.wrap(Base64.getUrlDecoder().decode(cursor));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("invalid cursor " + cursor);
+        }
+        if (bytes.remaining() != 8) {
+            throw new IllegalArgumentException("invalid cursor " + cursor);
+        }
+        float score = bytes.getFloat();
+        int doc = bytes.getInt();
+        return new Page(0, size, new ScoreDoc(doc, score));
+    }
+
+    /**
+     * @return cursor of the page after the one ending with {@code last}
+     */
+    static String cursor(ScoreDoc last) {
+        ByteBuffer bytes = ByteBuffer.allocate(8).putFloat(last.score).putInt(last.doc);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.array());
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return the last hit of the previous page, null if the page is given by number
+     */
+    ScoreDoc getAfter() {
+        return after;
+    }
+
+    /**
+     * @return how many hits come before the page in the collected top hits
+     */
+    int getFrom() {
+        return after == null ? (number - 1) * size : 0;
+    }
+
+    /**
+     * @return how many top hits to collect for the page
+     */
+    int getCollect() {
+        return getFrom() + size;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Page)) {
+            return false;
+        }
+        Page other = (Page) o;
+        if (number != other.number || size != other.size) {
+            return false;
+        }
+        if (after == null || other.after == null) {
+            return after == other.after;
+        }
+        return after.doc == other.after.doc && Float.compare(after.score, other.after.score) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * number + size) + (after == null ? 0 : 31 * after.doc + Float.hashCode(after.score));
+    }
+
+    @Override
+    public String toString() {
+        return after == null ? "page " + number + " of " + size : "after " + cursor(after) + ", " + size;
+    }
+}
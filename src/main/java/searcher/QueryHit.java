@@ -1,15 +1,33 @@
 package searcher;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 public class QueryHit {
 
     private String expanded_query;
     private List<Hit> hits;
+    private long total_hits;
+    private String next_cursor;
+    private Map<String, Double> timings;
 
     public QueryHit(String expanded_query, List<Hit> hits) {
-        this.hits = hits;
+        this(expanded_query, hits, hits.size(), null);
+    }
+
+    /**
+     * @param total_hits  how many documents match, on all pages
+     * @param next_cursor cursor of the next page, null if this is the last one
+     */
+    public QueryHit(String expanded_query, List<Hit> hits, long total_hits, String next_cursor) {
+        // cached responses are shared between requests, so they cannot be changed
+        this.hits = Collections.unmodifiableList(hits);
         this.expanded_query = expanded_query;
+        this.total_hits = total_hits;
+        this.next_cursor = next_cursor;
     }
 
     // getters required for jackson (json conversion) to work
@@ -22,6 +40,31 @@ public class QueryHit {
         return expanded_query;
     }
 
+    public long getTotal_hits() {
+        return total_hits;
+    }
+
+    public String getNext_cursor() {
+        return next_cursor;
+    }
+
+    /**
+     * @return milliseconds spent in each stage of the search, only when they were asked for
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public Map<String, Double> getTimings() {
+        return timings;
+    }
+
+    /**
+     * @return a copy of this response with timings, this one may be cached and shared
+     */
+    QueryHit withTimings(Map<String, Double> timings) {
+        QueryHit queryHit = new QueryHit(expanded_query, hits, total_hits, next_cursor);
+        queryHit.timings = timings;
+        return queryHit;
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
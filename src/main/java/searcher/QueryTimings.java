@@ -0,0 +1,47 @@
+package searcher;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Time spent in each {@link Stage} by one request. Stages that did not run, e.g. expansion when it was cached, are
+ * absent.
+ */
+class QueryTimings {
+    private final EnumMap<Stage, Long> nanos = new EnumMap<>(Stage.class);
+    private final long start = System.nanoTime();
+
+    /**
+     * Adds the time since {@code startNanos} to a stage.
+     *
+     * @return now, the start of the next stage
+     */
+    long record(Stage stage, long startNanos) {
+        long now = System.nanoTime();
+        nanos.merge(stage, now - startNanos, Long::sum);
+        return now;
+    }
+
+    /**
+     * Sets the total to the time since the request started.
+     */
+    void finish() {
+        nanos.put(Stage.TOTAL, System.nanoTime() - start);
+    }
+
+    Map<Stage, Long> nanos() {
+        return nanos;
+    }
+
+    /**
+     * @return milliseconds per stage, by stage name
+     */
+    Map<String, Double> toMillis() {
+        Map<String, Double> millis = new LinkedHashMap<>();
+        for (Map.Entry<Stage, Long> entry : nanos.entrySet()) {
+            millis.put(entry.getKey().key(), entry.getValue() / 1e6);
+        }
+        return millis;
+    }
+}
@@ -2,8 +2,7 @@ package searcher;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.analysis.standard.StandardAnalyzer;
-import org.apache.lucene.document.Document;
+import org.apache.lucene.analysis.CharArraySet;
 import org.apache.lucene.document.FeatureField;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
@@ -16,143 +15,408 @@ import org.apache.lucene.store.FSDirectory;
 import queryExpansion.*;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.StringJoiner;
 import java.util.Vector;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Implements search functionality.
  * <p>
- * Web application needs to call {@code queryIndex()} to obtain results in json format. Call {@code close()} in app after
- * you are finished with searching.
+ * A single instance is meant to be shared by the whole application: the index is opened once, searchers are acquired
+ * and released per request, and a background thread reopens the index when it changes on disk. {@code queryIndex()}
+ * keeps all per-request state on the stack, so it can be called from any number of threads at once. Web application
+ * needs to call {@code queryIndex()} to obtain results in json format. Call {@code close()} in app after you are finished
+ * with searching.
  */
 public class Search {
-    // static so that they are initialized once
-    private static IndexReader reader;
-    private static IndexSearcher searcher;
-    private static Analyzer analyzer;
-    private static QueryParser parser;
+    public static final long DEFAULT_REFRESH_SECONDS = 5;
     final String fieldName = "contents";    // the field to search for
     final int MAX_RESULTS = 100;
+    // hits of the original query the expansion methods read
+    final int FEEDBACK_DOCS = 10;
     final int MAX_EXPANDED_QUERY_TERM_COUNT = 20;
-    public String currentQuery;
+    // neighbors picked per query term by the global expansion, as many as the local clusters pick
+    final int GLOBAL_NEIGHBORS_PER_TERM = 4;
+    private static final Set<String> EXPANSION_METHODS = new HashSet<>(
+            Arrays.asList("ROCHIO", "ASSOCIATION", "METRIC", "SCALAR", "GLOBAL"));
     ObjectMapper jsonMapper;    // to convert to json
+    // queries are analyzed like the index of the reader they run against, see ReaderAnalysis
+    private volatile ReaderAnalysis readerAnalysis;
+    private final CharArraySet stopwords;
+    private final SearcherManager searcherManager;
+    private final ScheduledExecutorService refresher;
+    // expanded queries and responses of recent requests, for the reader version they were computed against
+    private final BoundedCache<CacheKey, Expansion> expansionCache;
+    private final BoundedCache<CacheKey, QueryHit> resultCache;
+    private final HitLoader hitLoader;
+    private final SegmentParallelSearch segmentSearch;
+    private final int rescorePoolSize;
+    private final StageMetrics stageMetrics = new StageMetrics();
+    // neighbors of the whole corpus for GLOBAL expansion, null while there is no co-occurrence file
+    private final Path cooccurrenceFile;
+    private volatile GlobalCooccurrence cooccurrence;
+    private long cooccurrenceModified;
 
     public Search(String pathToIndex) throws IOException {
-        reader = DirectoryReader.open(FSDirectory.open(Paths.get(pathToIndex)));
-        searcher = new IndexSearcher(reader);
-        analyzer = new StandardAnalyzer();
-        parser = new QueryParser(fieldName, analyzer);
+        this(pathToIndex, DEFAULT_REFRESH_SECONDS);
+    }
+
+    public Search(String pathToIndex, long refreshSeconds) throws IOException {
+        this(settings(pathToIndex, refreshSeconds));
+    }
+
+    /**
+     * Opens the index once and starts the background refresh.
+     *
+     * @param settings index directory, refresh interval and cache sizes
+     * @throws IOException if the index cannot be opened
+     */
+    public Search(SearchSettings settings) throws IOException {
         this.jsonMapper = new ObjectMapper();
+        this.hitLoader = new HitLoader(settings.isHitFieldsFromDocValues());
+        this.segmentSearch = new SegmentParallelSearch(settings.getSegmentSearchThreads(),
+                settings.getSegmentSearchMinClauses(), settings.getSegmentSearchMinDocs(), settings.getSliceMaxDocs(),
+                settings.getSliceMaxSegments());
+        this.rescorePoolSize = settings.getRescorePoolSize();
+
+        // warm new readers with the queries every request runs, before they are swapped in
+        List<Query> warmUpQueries = Arrays.asList(
+                new MatchAllDocsQuery(),
+                getPageRankBoostedQuery(new MatchAllDocsQuery()));
+        this.searcherManager = new SearcherManager(FSDirectory.open(Paths.get(settings.getIndex())),
+                new WarmingSearcherFactory(warmUpQueries));
+        // queries are analyzed with the same stopwords as the index, the analyzer is chosen per reader
+        this.stopwords = Stopwords.load(settings.getStopwordsFile());
+
+        this.expansionCache = new BoundedCache<>(settings.getExpansionCacheSize(),
+                TimeUnit.SECONDS.toMillis(settings.getExpansionCacheTtlSeconds()));
+        this.resultCache = new BoundedCache<>(settings.getResultCacheMaxBytes(),
+                TimeUnit.SECONDS.toMillis(settings.getResultCacheTtlSeconds()), Search::estimateBytes);
+        // entries of the old reader can never be hit again, drop them instead of waiting for them to age out
+        this.searcherManager.addListener(new ReferenceManager.RefreshListener() {
+            @Override
+            public void beforeRefresh() {
+            }
+
+            @Override
+            public void afterRefresh(boolean didRefresh) {
+                if (didRefresh) {
+                    expansionCache.clear();
+                    resultCache.clear();
+                }
+            }
+        });
+
+        this.cooccurrenceFile = settings.getCooccurrenceFile() != null
+                ? Paths.get(settings.getCooccurrenceFile())
+                : Paths.get(settings.getIndex(), GlobalCooccurrence.FILE_NAME);
+        loadCooccurrence();
+
+        this.refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "index-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long refreshSeconds = settings.getRefreshSeconds();
+        this.refresher.scheduleWithFixedDelay(this::refresh, refreshSeconds, refreshSeconds, TimeUnit.SECONDS);
+    }
+
+    private static SearchSettings settings(String pathToIndex, long refreshSeconds) {
+        SearchSettings settings = new SearchSettings();
+        settings.setIndex(pathToIndex);
+        settings.setRefreshSeconds(refreshSeconds);
+        return settings;
+    }
+
+    /**
+     * Reopens the index if it changed on disk, a no-op otherwise. In-flight requests keep the searcher they acquired.
+     */
+    private void refresh() {
+        try {
+            searcherManager.maybeRefresh();
+        } catch (IOException e) {
+            System.out.println("ERROR refreshing index, IOException: " + e.getMessage());
+        }
+        loadCooccurrence();
+    }
+
+    /**
+     * Maps the co-occurrence file written by {@code indexer.BuildCooccurrence}, again whenever it is rebuilt. Without
+     * the file GLOBAL expansion leaves queries as they are.
+     */
+    private void loadCooccurrence() {
+        try {
+            if (!Files.isReadable(cooccurrenceFile)) {
+                cooccurrence = null;
+                return;
+            }
+            long modified = Files.getLastModifiedTime(cooccurrenceFile).toMillis();
+            if (cooccurrence == null || modified != cooccurrenceModified) {
+                cooccurrence = GlobalCooccurrence.open(cooccurrenceFile);
+                cooccurrenceModified = modified;
+                expansionCache.clear();
+                resultCache.clear();
+                System.out.println("Loaded neighbors of " + cooccurrence.size() + " terms from " + cooccurrenceFile);
+            }
+        } catch (IOException e) {
+            System.out.println("ERROR reading co-occurrence file, IOException: " + e.getMessage());
+        }
     }
 
     public static void main(String[] args) throws IOException {
         Search search = new Search("index");
         boolean usePageRank = true;
         String queryString = "pepperoni pizza";
-        String expansionMethod = "metric";  // other options "Rochio", "Association", "None", "Metric"
+        String expansionMethod = "metric";  // other options "Rochio", "Association", "None", "Metric", "Scalar", "Global"
         System.out.println(search.queryIndex(queryString, usePageRank, expansionMethod));
         search.close();
     }
 
-    private String createExpandedQueryString(Query query) {
-        String[] expandedQueryString = query.toString().split("contents:");
-        StringBuilder sb = new StringBuilder();
-        Vector<String> sbTerms = new Vector<String>();
+    /**
+     * @return the terms of the expanded query shown to the user, leaving out numbers
+     */
+    private String createExpandedQueryString(ExpandedQuery expandedQuery) {
+        StringJoiner sb = new StringJoiner(" ");
         int count = 0;
-        for (int i = 0; i < expandedQueryString.length; i++) {
-            if (!sbTerms.contains(expandedQueryString[i]) &&
-                    !expandedQueryString[i].chars().anyMatch(Character::isDigit) &&
-                    count < MAX_EXPANDED_QUERY_TERM_COUNT) {
+        for (String term : expandedQuery.getTerms()) {
+            if (!term.chars().anyMatch(Character::isDigit) && count < MAX_EXPANDED_QUERY_TERM_COUNT) {
                 count++;
-                sbTerms.add(expandedQueryString[i]);
-                sb.append(expandedQueryString[i]);
+                sb.add(term);
             }
         }
         return sb.toString();
     }
 
-    private QueryHit getHits(Query query, boolean usePageRank, String expansionMethod) throws IOException {
+    private QueryHit getHits(IndexSearcher searcher, Analyzer analyzer, String queryString, Query query,
+                             boolean usePageRank, String expansionMethod, Page page, QueryTimings timings)
+            throws IOException {
         TopDocs results;
         ScoreDoc[] hits;
-        int numTotalHits;
         Query originalQuery = query;    // warning: check if java modifies originalQuery if we modify query
+        long start = System.nanoTime();
 
         // Lucene's way of doing things, modify query to incorporate pagerank
         if (usePageRank) {
             query = getPageRankBoostedQuery(query);
+            start = timings.record(Stage.PAGERANK_BOOST, start);
         }
 
-        // for query expansion, work with the results of regular search
-        results = searcher.search(query, MAX_RESULTS);
-        hits = results.scoreDocs;
-        String finalExpandedQueryString = "";
-        Query expandedQuery = null;
-
         // case insensitive
         String expansionMethodUpper = expansionMethod.toUpperCase();
 
-        switch (expansionMethodUpper) {
-            case "NONE":
-                // no change to query
-                finalExpandedQueryString = "";
-                break;
+        // with a pool the expanded query reorders the top hits of the query instead of searching the index again
+        Query firstQuery = query;
+        boolean rescore = rescorePoolSize > 0;
+        TopDocs firstResults = null;
 
+        // the parsed query is the normalized query text: same analysis, syntax and whitespace give the same string
+        Expansion expansion = null;
+        CacheKey key = null;
+        if (EXPANSION_METHODS.contains(expansionMethodUpper)) {
+            key = new CacheKey(originalQuery.toString(), expansionMethodUpper, usePageRank,
+                    ((DirectoryReader) searcher.getIndexReader()).getVersion(), null);
+            expansion = expansionCache.get(key);
+            if (expansion == null && "GLOBAL".equals(expansionMethodUpper)) {
+                // global expansion looks the query terms up, it needs no feedback documents
+                expansion = expand(searcher, analyzer, queryString, originalQuery, null, expansionMethodUpper, timings);
+                expansionCache.put(key, expansion);
+            } else if (expansion == null) {
+                // for query expansion, work with the results of regular search
+                checkCancelled();
+                start = System.nanoTime();
+                firstResults = segmentSearch.searcherFor(searcher, query).search(query,
+                        rescore ? Math.max(rescorePoolSize, FEEDBACK_DOCS) : FEEDBACK_DOCS);
+                timings.record(Stage.FIRST_SEARCH, start);
+                expansion = expand(searcher, analyzer, queryString, originalQuery, firstResults.scoreDocs, expansionMethodUpper,
+                        timings);
+                expansionCache.put(key, expansion);
+            }
+        } else {
+            expansion = Expansion.NONE;
+        }
+
+        // search again with expanded query and return the new results
+        IndexSearcher resultSearcher = searcher;
+        if (!"".equals(expansion.queryString)) {
+            if (usePageRank) {
+                start = System.nanoTime();
+                query = getPageRankBoostedQuery(expansion.query);
+                timings.record(Stage.PAGERANK_BOOST, start);
+            }
+            // rochio scores the expanded query with tf-idf, like the terms were weighted
+            if ("ROCHIO".equals(expansionMethodUpper)) {
+                resultSearcher = tfidfSearcher(searcher);
+            }
+        }
+        // unexpanded queries have nothing to reorder
+        rescore = rescore && !"".equals(expansion.queryString);
+        if (rescore) {
+            if (firstResults == null) {
+                // the expansion was cached, the candidates still come from the query
+                start = System.nanoTime();
+                firstResults = segmentSearch.searcherFor(searcher, firstQuery).search(firstQuery, rescorePoolSize);
+                timings.record(Stage.FIRST_SEARCH, start);
+            }
+        } else {
+            // expanded queries are the expensive ones, large indexes search their segments in parallel for them
+            resultSearcher = segmentSearch.searcherFor(resultSearcher, query);
+        }
+        // only the hits up to the end of the page are collected, and only those on it are loaded
+        checkCancelled();
+        start = System.nanoTime();
+        long totalHits;
+        boolean more;
+        if (rescore) {
+            // the reordered pool is the whole result set, numbered pages and cursors are all cut from it
+            ScoreDoc[] pool = new FeedbackRescorer(query).rescore(resultSearcher, pool(firstResults),
+                    rescorePoolSize).scoreDocs;
+            int from = page.getAfter() != null ? indexAfter(pool, page.getAfter()) : 0;
+            hits = Arrays.copyOfRange(pool, from, Math.min(pool.length, from + page.getCollect()));
+            more = from + page.getCollect() < pool.length;
+            // no page reaches past the pool, so it is all the hits there are
+            totalHits = pool.length;
+        } else {
+            if (page.getAfter() != null) {
+                // totalHits counts the hits before the cursor too, one hit past the page tells whether there is more
+                results = resultSearcher.searchAfter(page.getAfter(), query, page.getSize() + 1);
+                hits = Arrays.copyOf(results.scoreDocs, Math.min(results.scoreDocs.length, page.getSize()));
+                more = results.scoreDocs.length > page.getSize();
+            } else {
+                results = resultSearcher.search(query, page.getCollect());
+                hits = results.scoreDocs;
+                more = page.getCollect() < results.totalHits;
+            }
+            totalHits = results.totalHits;
+        }
+        start = timings.record(Stage.SEARCH, start);
+
+        List<Hit> resultHits = new ArrayList<>();
+        checkCancelled();
+        for (int i = page.getFrom(); i < hits.length; i++) {
+            resultHits.add(hitLoader.load(searcher, hits[i].doc));
+        }
+        timings.record(Stage.RENDER, start);
+        String nextCursor = null;
+        if (resultHits.size() == page.getSize() && more) {
+            nextCursor = Page.cursor(hits[hits.length - 1]);
+        }
+        QueryHit queryHit = new QueryHit(expansion.queryString, resultHits, totalHits, nextCursor);
+        return queryHit;
+    }
+
+    /**
+     * Stops a search whose caller gave up on it, see {@link #queryIndex(String, boolean, String, Page, boolean)}.
+     *
+     * @throws InterruptedIOException if the thread was interrupted
+     */
+    private static void checkCancelled() throws InterruptedIOException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("search cancelled");
+        }
+    }
+
+    /**
+     * @return the first {@code rescorePoolSize} hits, the feedback search may have collected more of them
+     */
+    private TopDocs pool(TopDocs firstResults) {
+        if (firstResults.scoreDocs.length <= rescorePoolSize) {
+            return firstResults;
+        }
+        return new TopDocs(firstResults.totalHits, Arrays.copyOf(firstResults.scoreDocs, rescorePoolSize),
+                firstResults.getMaxScore());
+    }
+
+    /**
+     * @return index of the first hit of the reordered pool that comes after {@code after}, in the order of
+     * {@code searchAfter}: by score, then by document
+     */
+    static int indexAfter(ScoreDoc[] pool, ScoreDoc after) {
+        int i = 0;
+        while (i < pool.length && (pool[i].score > after.score
+                || (pool[i].score == after.score && pool[i].doc <= after.doc))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Expands a query from the hits of the regular search.
+     *
+     * @param hits                 hits of the regular search, null for GLOBAL which does not use them
+     * @param expansionMethodUpper one of {@code EXPANSION_METHODS}
+     */
+    private Expansion expand(IndexSearcher searcher, Analyzer analyzer, String queryString, Query originalQuery,
+                             ScoreDoc[] hits, String expansionMethodUpper, QueryTimings timings) throws IOException {
+        ExpandedQuery expandedQuery;
+        long start = System.nanoTime();
+        switch (expansionMethodUpper) {
             case "ROCHIO":
                 TFIDFSimilarity similarity = null;
-                searcher.setSimilarity(new ClassicSimilarity());
-                similarity = (TFIDFSimilarity) searcher.getSimilarity(true);
-                QueryTermVector queryTermVector = new QueryTermVector(this.currentQuery, analyzer);
-                QueryExpansion queryExpansion = new QueryExpansion(analyzer, searcher, similarity);
-                expandedQuery = queryExpansion.expandQuery(this.currentQuery, hits);
-                finalExpandedQueryString = createExpandedQueryString(expandedQuery);
+                IndexSearcher tfidfSearcher = tfidfSearcher(searcher);
+                similarity = (TFIDFSimilarity) tfidfSearcher.getSimilarity(true);
+                QueryExpansion queryExpansion = new QueryExpansion(analyzer, tfidfSearcher, similarity);
+                Vector<QueryTermVector> docsTerms = queryExpansion.getDocsTerms(hits);
+                start = timings.record(Stage.FEEDBACK_DOCS, start);
+                expandedQuery = queryExpansion.expandQuery(queryString, docsTerms);
                 break;
 
             case "ASSOCIATION":
-                AssociationCluster associationCluster = new AssociationCluster(searcher, analyzer);
-                expandedQuery = associationCluster.localCluster(originalQuery, hits);
-                finalExpandedQueryString = createExpandedQueryString(expandedQuery);
+                AssociationCluster associationCluster = new AssociationCluster(searcher, analyzer, stopwords);
+                Vector<QueryDoc> associationDocs = associationCluster.convert_to_doc_vector(hits);
+                start = timings.record(Stage.FEEDBACK_DOCS, start);
+                expandedQuery = associationCluster.localCluster(originalQuery, associationDocs);
                 break;
 
             case "METRIC":
-                MetricCluster metricCluster = new MetricCluster(searcher, analyzer);
-                expandedQuery = metricCluster.localCluster(originalQuery, hits);
-                finalExpandedQueryString = createExpandedQueryString(expandedQuery);
+                MetricCluster metricCluster = new MetricCluster(searcher, analyzer, stopwords);
+                Vector<QueryDoc> metricDocs = metricCluster.convert_to_doc_vector(hits);
+                start = timings.record(Stage.FEEDBACK_DOCS, start);
+                expandedQuery = metricCluster.localCluster(originalQuery, metricDocs);
                 break;
 
             case "SCALAR":
-                ScalarCluster scalarCluster = new ScalarCluster(searcher,analyzer);
-                expandedQuery = scalarCluster.localCluster(originalQuery,hits);
-                finalExpandedQueryString = createExpandedQueryString(expandedQuery);
+                ScalarCluster scalarCluster = new ScalarCluster(searcher, analyzer, stopwords);
+                Vector<QueryDoc> scalarDocs = scalarCluster.convert_to_doc_vector(hits);
+                start = timings.record(Stage.FEEDBACK_DOCS, start);
+                expandedQuery = scalarCluster.localCluster(originalQuery, scalarDocs);
                 break;
 
-            default:
-                // no change to query
-                finalExpandedQueryString = "";
+            case "GLOBAL":
+                GlobalCooccurrence global = cooccurrence;
+                if (global == null) {
+                    timings.record(Stage.EXPANSION, start);
+                    return Expansion.NONE;
+                }
+                expandedQuery = global.expand(originalQuery, GLOBAL_NEIGHBORS_PER_TERM);
                 break;
-        }
 
-        // search again with expanded query and return the new results
-        if (!"".equals(finalExpandedQueryString)) {
-            if (usePageRank) {
-                query = getPageRankBoostedQuery(expandedQuery);
-            }
-            results = searcher.search(query, MAX_RESULTS);
-            hits = results.scoreDocs;
+            default:
+                throw new IllegalArgumentException("unknown expansion method " + expansionMethodUpper);
         }
+        Expansion expansion = new Expansion(expandedQuery.toQuery(), createExpandedQueryString(expandedQuery));
+        timings.record(Stage.EXPANSION, start);
+        return expansion;
+    }
 
-        numTotalHits = Math.min(Math.toIntExact(results.totalHits), MAX_RESULTS);  // actually these many hits
-        List<Hit> resultHits = new ArrayList<>();
-        for (int i = 0; i < numTotalHits; i++) {
-            Document doc = searcher.doc(hits[i].doc);
-            String path = doc.get("path");
-            String title = doc.get("title");    // will be null if title doesn't exist
-            String url = doc.get("url");        // will be null if url doesn't exist
-            resultHits.add(new Hit(path, title, url));
-        }
-        QueryHit queryHit = new QueryHit(finalExpandedQueryString, resultHits);
-        return queryHit;
+    /**
+     * The searcher is shared, so tf-idf scoring needs a private one over the same reader.
+     */
+    private static IndexSearcher tfidfSearcher(IndexSearcher searcher) {
+        IndexSearcher tfidfSearcher = new IndexSearcher(searcher.getIndexReader());
+        tfidfSearcher.setSimilarity(new ClassicSimilarity());
+        return tfidfSearcher;
     }
 
     /**
@@ -176,16 +440,68 @@ public class Search {
      *
      * @param queryString the actual query entered by the user
      * @param usePageRank whether to use pagerank or not
-     * @return QueryHit object
+     * @return QueryHit object with the first {@code MAX_RESULTS} hits
      */
     public QueryHit queryIndex(String queryString, boolean usePageRank, String expansionMethod) {
+        return queryIndex(queryString, usePageRank, expansionMethod, Page.number(1, MAX_RESULTS), false);
+    }
+
+    /**
+     * Returns one page of results.
+     * <p>
+     * Responses are cached per reader version, including those without hits and those for queries that do not parse.
+     * The time spent in each stage is recorded in the stage metrics either way.
+     * <p>
+     * Interrupting the calling thread cancels the search: it stops before its next stage and returns no hits, and
+     * nothing is cached or recorded for it.
+     *
+     * @param queryString the actual query entered by the user
+     * @param usePageRank whether to use pagerank or not
+     * @param page        which hits to return
+     * @param withTimings add the time spent in each stage to the response
+     * @return QueryHit object with the hits of the page and the cursor of the next one
+     */
+    public QueryHit queryIndex(String queryString, boolean usePageRank, String expansionMethod, Page page,
+                               boolean withTimings) {
+        QueryTimings timings = new QueryTimings();
+        QueryHit queryHit = null;
         try {
-            this.currentQuery = queryString;
-            Query query = parser.parse(queryString);
-            QueryHit results = this.getHits(query, usePageRank, expansionMethod);
-            return results;
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                CacheKey key = new CacheKey(queryString, expansionMethod.toUpperCase(), usePageRank,
+                        ((DirectoryReader) searcher.getIndexReader()).getVersion(), page);
+                queryHit = resultCache.get(key);
+                if (queryHit == null) {
+                    queryHit = parseAndGetHits(searcher, queryString, usePageRank, expansionMethod, page, timings);
+                    resultCache.put(key, queryHit);
+                }
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (InterruptedIOException e) {
+            return new QueryHit("", new ArrayList<>());
         } catch (IOException e) {
             System.out.println("ERROR with reading index, IOException");
+        }
+        if (queryHit == null) {
+            List<Hit> empty = new ArrayList<>();
+            queryHit = new QueryHit("", empty);
+        }
+        timings.finish();
+        String method = expansionMethod.toUpperCase();
+        stageMetrics.record(EXPANSION_METHODS.contains(method) ? method : "NONE", timings);
+        return withTimings ? queryHit.withTimings(timings.toMillis()) : queryHit;
+    }
+
+    private QueryHit parseAndGetHits(IndexSearcher searcher, String queryString, boolean usePageRank,
+                                     String expansionMethod, Page page, QueryTimings timings) throws IOException {
+        try {
+            long start = System.nanoTime();
+            ReaderAnalysis analysis = readerAnalysis(searcher);
+            Query query = analysis.parser.get().parse(queryString);
+            timings.record(Stage.PARSE, start);
+            return this.getHits(searcher, analysis.analyzer, queryString, query, usePageRank, expansionMethod, page,
+                    timings);
         } catch (ParseException e) {
             System.out.println("ERROR with parsing query, ParseException");
         }
@@ -193,13 +509,128 @@ public class Search {
         return new QueryHit("", empty);
     }
 
+    /**
+     * @return analysis of the searcher's reader, chosen again when a refresh swapped in a reader of an index that may
+     * have been rebuilt with another analyzer
+     */
+    private ReaderAnalysis readerAnalysis(IndexSearcher searcher) throws IOException {
+        DirectoryReader reader = (DirectoryReader) searcher.getIndexReader();
+        ReaderAnalysis analysis = readerAnalysis;
+        if (analysis == null || analysis.readerKey != reader.getReaderCacheHelper().getKey()) {
+            analysis = new ReaderAnalysis(reader, ContentsAnalyzer.forIndex(reader, stopwords));
+            readerAnalysis = analysis;
+        }
+        return analysis;
+    }
+
+    /**
+     * Approximate heap size of a cached response: two bytes per character plus object headers and references.
+     */
+    private static long estimateBytes(CacheKey key, QueryHit queryHit) {
+        long bytes = 128 + 2 * (key.query.length() + key.method.length() + queryHit.getExpanded_query().length());
+        for (Hit hit : queryHit.getHits()) {
+            bytes += 96 + 2 * (length(hit.getPath()) + length(hit.getTitle()) + length(hit.getUrl()));
+        }
+        return bytes;
+    }
+
+    private static int length(String s) {
+        return s == null ? 0 : s.length();
+    }
+
+    /**
+     * @return latency of every stage, per expansion method, since the application started
+     */
+    public StageMetrics getStageMetrics() {
+        return stageMetrics;
+    }
+
+    /**
+     * @return hits and misses of the expansion cache since the application started
+     */
+    public CacheStats getExpansionCacheStats() {
+        return expansionCache.stats();
+    }
+
+    /**
+     * @return hits and misses of the response cache since the application started, its weight is in bytes
+     */
+    public CacheStats getResultCacheStats() {
+        return resultCache.stats();
+    }
+
     /**
      * Call when no need to search anymore.
      *
      * @throws IOException if there is a low-level IO error
      */
     public void close() throws IOException {
-        reader.close();
+        refresher.shutdownNow();
+        segmentSearch.close();
+        searcherManager.close();
+    }
+
+    /**
+     * An expanded query and the terms shown for it, empty if the query was not expanded.
+     */
+    private static class Expansion {
+        static final Expansion NONE = new Expansion(null, "");
+        final Query query;
+        final String queryString;
+
+        Expansion(Query query, String queryString) {
+            this.query = query;
+            this.queryString = queryString;
+        }
+    }
+
+    private static class CacheKey {
+        final String query;
+        final String method;
+        final boolean usePageRank;
+        final long readerVersion;
+        final Page page;    // null for expansions, they do not depend on the page
+
+        CacheKey(String query, String method, boolean usePageRank, long readerVersion, Page page) {
+            this.query = query;
+            this.method = method;
+            this.usePageRank = usePageRank;
+            this.readerVersion = readerVersion;
+            this.page = page;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) o;
+            return usePageRank == other.usePageRank && readerVersion == other.readerVersion
+                    && query.equals(other.query) && method.equals(other.method) && Objects.equals(page, other.page);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(query, method, usePageRank, readerVersion, page);
+        }
     }
 
+    /**
+     * The analyzer an index was written with, read from the commit of one of its readers, and the query parsers using
+     * it. Analyzers are thread-safe, query parsers are not so every request thread gets its own.
+     */
+    private class ReaderAnalysis {
+        final IndexReader.CacheKey readerKey;
+        final Analyzer analyzer;
+        final ThreadLocal<QueryParser> parser;
+
+        ReaderAnalysis(IndexReader reader, Analyzer analyzer) {
+            this.readerKey = reader.getReaderCacheHelper().getKey();
+            this.analyzer = analyzer;
+            this.parser = ThreadLocal.withInitial(() -> new QueryParser(fieldName, analyzer));
+        }
+    }
 }
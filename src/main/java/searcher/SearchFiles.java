@@ -17,7 +17,6 @@ package searcher;/*
 
 
 import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
@@ -27,6 +26,8 @@ import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.store.FSDirectory;
+import queryExpansion.ContentsAnalyzer;
+import queryExpansion.Stopwords;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -49,7 +50,7 @@ public class SearchFiles {
      */
     public static void main(String[] args) throws Exception {
         String usage =
-                "Usage:\tjava org.apache.lucene.demo.searcher.SearchFiles [-index dir] [-field f] [-repeat n] [-queries file] [-query string] [-raw] [-paging hitsPerPage]\n\nSee http://lucene.apache.org/core/4_1_0/demo/ for details.";
+                "Usage:\tjava org.apache.lucene.demo.searcher.SearchFiles [-index dir] [-field f] [-repeat n] [-queries file] [-query string] [-raw] [-paging hitsPerPage] [-stopwords file]\n\nSee http://lucene.apache.org/core/4_1_0/demo/ for details.";
         if (args.length > 0 && ("-h".equals(args[0]) || "-help".equals(args[0]))) {
             System.out.println(usage);
             System.exit(0);
@@ -63,6 +64,7 @@ public class SearchFiles {
         boolean raw = false;
         String queryString = null;
         int hitsPerPage = 10;
+        String stopwords = null;
 
         for (int i = 0; i < args.length; i++) {
             if ("-index".equals(args[i])) {
@@ -80,6 +82,9 @@ public class SearchFiles {
             } else if ("-repeat".equals(args[i])) {
                 repeat = Integer.parseInt(args[i + 1]);
                 i++;
+            } else if ("-stopwords".equals(args[i])) {
+                stopwords = args[i + 1];
+                i++;
             } else if ("-raw".equals(args[i])) {
                 raw = true;
             } else if ("-paging".equals(args[i])) {
@@ -92,9 +97,10 @@ public class SearchFiles {
             }
         }
 
-        IndexReader reader = DirectoryReader.open(FSDirectory.open(Paths.get(index)));
+        DirectoryReader reader = DirectoryReader.open(FSDirectory.open(Paths.get(index)));
         IndexSearcher searcher = new IndexSearcher(reader);
-        Analyzer analyzer = new StandardAnalyzer();
+        // queries are analyzed like the index was
+        Analyzer analyzer = ContentsAnalyzer.forIndex(reader, Stopwords.load(stopwords));
 
         BufferedReader in = null;
         if (queries != null) {
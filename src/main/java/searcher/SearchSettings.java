@@ -0,0 +1,189 @@
+package searcher;
+
+/**
+ * Settings of a {@link Search}. The web application binds them from the {@code search.*} properties.
+ */
+public class SearchSettings {
+    private String index = "index";
+    private long refreshSeconds = Search.DEFAULT_REFRESH_SECONDS;
+    private int expansionCacheSize = 1000;
+    private long expansionCacheTtlSeconds = 600;
+    private long resultCacheMaxBytes = 64L * 1024 * 1024;
+    private long resultCacheTtlSeconds = 600;
+    private boolean hitFieldsFromDocValues = true;
+    private int segmentSearchThreads = 0;
+    private int segmentSearchMinClauses = 8;
+    private int segmentSearchMinDocs = 100000;
+    private int sliceMaxDocs = 250000;
+    private int sliceMaxSegments = 5;
+    private String cooccurrenceFile;
+    private String stopwordsFile;
+    private int rescorePoolSize = 0;
+
+    public String getIndex() {
+        return index;
+    }
+
+    /**
+     * @param index directory of the index
+     */
+    public void setIndex(String index) {
+        this.index = index;
+    }
+
+    public long getRefreshSeconds() {
+        return refreshSeconds;
+    }
+
+    /**
+     * @param refreshSeconds how often to check the index directory for changes
+     */
+    public void setRefreshSeconds(long refreshSeconds) {
+        this.refreshSeconds = refreshSeconds;
+    }
+
+    public int getExpansionCacheSize() {
+        return expansionCacheSize;
+    }
+
+    /**
+     * @param expansionCacheSize how many expanded queries to keep, 0 to turn the cache off
+     */
+    public void setExpansionCacheSize(int expansionCacheSize) {
+        this.expansionCacheSize = expansionCacheSize;
+    }
+
+    public long getExpansionCacheTtlSeconds() {
+        return expansionCacheTtlSeconds;
+    }
+
+    /**
+     * @param expansionCacheTtlSeconds how long an expanded query is kept at most
+     */
+    public void setExpansionCacheTtlSeconds(long expansionCacheTtlSeconds) {
+        this.expansionCacheTtlSeconds = expansionCacheTtlSeconds;
+    }
+
+    public long getResultCacheMaxBytes() {
+        return resultCacheMaxBytes;
+    }
+
+    /**
+     * @param resultCacheMaxBytes approximate memory the cached responses may take, 0 to turn the cache off
+     */
+    public void setResultCacheMaxBytes(long resultCacheMaxBytes) {
+        this.resultCacheMaxBytes = resultCacheMaxBytes;
+    }
+
+    public long getResultCacheTtlSeconds() {
+        return resultCacheTtlSeconds;
+    }
+
+    /**
+     * @param resultCacheTtlSeconds how long a response is kept at most
+     */
+    public void setResultCacheTtlSeconds(long resultCacheTtlSeconds) {
+        this.resultCacheTtlSeconds = resultCacheTtlSeconds;
+    }
+
+    public boolean isHitFieldsFromDocValues() {
+        return hitFieldsFromDocValues;
+    }
+
+    /**
+     * @param hitFieldsFromDocValues read path, title and url of hits from doc values instead of stored fields
+     */
+    public void setHitFieldsFromDocValues(boolean hitFieldsFromDocValues) {
+        this.hitFieldsFromDocValues = hitFieldsFromDocValues;
+    }
+
+    public int getSegmentSearchThreads() {
+        return segmentSearchThreads;
+    }
+
+    /**
+     * @param segmentSearchThreads threads searching the segments of one query in parallel, 0 to search on the request
+     *                             thread only
+     */
+    public void setSegmentSearchThreads(int segmentSearchThreads) {
+        this.segmentSearchThreads = segmentSearchThreads;
+    }
+
+    public int getSegmentSearchMinClauses() {
+        return segmentSearchMinClauses;
+    }
+
+    /**
+     * @param segmentSearchMinClauses queries with fewer term clauses are searched on the request thread
+     */
+    public void setSegmentSearchMinClauses(int segmentSearchMinClauses) {
+        this.segmentSearchMinClauses = segmentSearchMinClauses;
+    }
+
+    public int getSegmentSearchMinDocs() {
+        return segmentSearchMinDocs;
+    }
+
+    /**
+     * @param segmentSearchMinDocs indexes with fewer documents are searched on the request thread
+     */
+    public void setSegmentSearchMinDocs(int segmentSearchMinDocs) {
+        this.segmentSearchMinDocs = segmentSearchMinDocs;
+    }
+
+    public int getSliceMaxDocs() {
+        return sliceMaxDocs;
+    }
+
+    /**
+     * @param sliceMaxDocs documents after which a slice of segments searched by one thread is closed
+     */
+    public void setSliceMaxDocs(int sliceMaxDocs) {
+        this.sliceMaxDocs = sliceMaxDocs;
+    }
+
+    public int getSliceMaxSegments() {
+        return sliceMaxSegments;
+    }
+
+    /**
+     * @param sliceMaxSegments most segments searched by one thread
+     */
+    public void setSliceMaxSegments(int sliceMaxSegments) {
+        this.sliceMaxSegments = sliceMaxSegments;
+    }
+
+    public String getCooccurrenceFile() {
+        return cooccurrenceFile;
+    }
+
+    /**
+     * @param cooccurrenceFile neighbors of every term for GLOBAL expansion, by default the one in the index directory
+     */
+    public void setCooccurrenceFile(String cooccurrenceFile) {
+        this.cooccurrenceFile = cooccurrenceFile;
+    }
+
+    public String getStopwordsFile() {
+        return stopwordsFile;
+    }
+
+    /**
+     * @param stopwordsFile stopwords file the index was written with, null for the default list
+     */
+    public void setStopwordsFile(String stopwordsFile) {
+        this.stopwordsFile = stopwordsFile;
+    }
+
+    public int getRescorePoolSize() {
+        return rescorePoolSize;
+    }
+
+    /**
+     * @param rescorePoolSize hits of the original query the expanded query reorders, they are all the pages of an
+     *                        expanded query then. 0 to search the whole index with the expanded query instead
+     */
+    public void setRescorePoolSize(int rescorePoolSize) {
+        this.rescorePoolSize = rescorePoolSize;
+    }
+}
@@ -0,0 +1,128 @@
+package searcher;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Searches the segments of a large index in parallel, for queries that are expensive enough to be worth it.
+ * <p>
+ * Segments are grouped into slices of consecutive segments, each slice is searched on its own thread and the top hits
+ * of the slices are merged. Because the slices keep the order of the segments, hits with equal scores come out in the
+ * same order as with a single thread, so paging and cursors are not affected. Queries with few clauses, and indexes
+ * that are small or would make a single slice, are searched on the request thread as before.
+ */
+class SegmentParallelSearch {
+    private final ExecutorService executor;
+    private final int minClauses;
+    private final int minDocs;
+    private final int sliceMaxDocs;
+    private final int sliceMaxSegments;
+
+    /**
+     * @param threads threads shared by all parallel searches, 0 to always search on the request thread
+     */
+    SegmentParallelSearch(int threads, int minClauses, int minDocs, int sliceMaxDocs, int sliceMaxSegments) {
+        if (threads > 0) {
+            AtomicInteger threadCount = new AtomicInteger();
+            this.executor = Executors.newFixedThreadPool(threads, r -> {
+                Thread thread = new Thread(r, "segment-search-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            this.executor = null;
+        }
+        this.minClauses = minClauses;
+        this.minDocs = minDocs;
+        this.sliceMaxDocs = Math.max(sliceMaxDocs, 1);
+        this.sliceMaxSegments = Math.max(sliceMaxSegments, 1);
+    }
+
+    /**
+     * @param searcher searcher of the request, its similarity is kept
+     * @return a searcher over the same reader that searches the slices in parallel if the query is worth it,
+     * {@code searcher} otherwise
+     */
+    IndexSearcher searcherFor(IndexSearcher searcher, Query query) {
+        IndexReader reader = searcher.getIndexReader();
+        if (executor == null || reader.maxDoc() < minDocs || countClauses(query) < minClauses
+                || slices(reader.leaves()).size() < 2) {
+            return searcher;
+        }
+        IndexSearcher parallel = new SlicedSearcher(reader);
+        parallel.setSimilarity(searcher.getSimilarity(true));
+        return parallel;
+    }
+
+    /**
+     * @return number of leaf clauses of the query, nested boolean queries counted by their own clauses
+     */
+    static int countClauses(Query query) {
+        if (query instanceof BoostQuery) {
+            return countClauses(((BoostQuery) query).getQuery());
+        }
+        if (query instanceof BooleanQuery) {
+            int clauses = 0;
+            for (BooleanClause clause : (BooleanQuery) query) {
+                clauses += countClauses(clause.getQuery());
+            }
+            return clauses;
+        }
+        return 1;
+    }
+
+    /**
+     * Groups consecutive segments, a slice is closed once it reaches either limit. Large segments get a slice of
+     * their own, runs of small ones share one so a thread is not spent on each.
+     */
+    List<IndexSearcher.LeafSlice> slices(List<LeafReaderContext> leaves) {
+        List<IndexSearcher.LeafSlice> slices = new ArrayList<>();
+        List<LeafReaderContext> slice = new ArrayList<>();
+        long sliceDocs = 0;
+        for (LeafReaderContext leaf : leaves) {
+            slice.add(leaf);
+            sliceDocs += leaf.reader().maxDoc();
+            if (sliceDocs >= sliceMaxDocs || slice.size() >= sliceMaxSegments) {
+                slices.add(new IndexSearcher.LeafSlice(slice.toArray(new LeafReaderContext[0])));
+                slice.clear();
+                sliceDocs = 0;
+            }
+        }
+        if (!slice.isEmpty()) {
+            slices.add(new IndexSearcher.LeafSlice(slice.toArray(new LeafReaderContext[0])));
+        }
+        return slices;
+    }
+
+    void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Inner rather than static: {@code slices()} is called from the constructor of {@code IndexSearcher}, before
+     * fields of a subclass are set, but the reference to the enclosing instance is already there.
+     */
+    private class SlicedSearcher extends IndexSearcher {
+        SlicedSearcher(IndexReader reader) {
+            super(reader, executor);
+        }
+
+        @Override
+        protected LeafSlice[] slices(List<LeafReaderContext> leaves) {
+            return SegmentParallelSearch.this.slices(leaves).toArray(new LeafSlice[0]);
+        }
+    }
+}
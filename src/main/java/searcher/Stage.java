@@ -0,0 +1,22 @@
+package searcher;
+
+/**
+ * Stages of answering a query, timed separately.
+ */
+public enum Stage {
+    PARSE,
+    PAGERANK_BOOST,
+    FIRST_SEARCH,
+    FEEDBACK_DOCS,   // terms of the feedback documents
+    EXPANSION,       // expansion method specific analysis of the feedback terms
+    SEARCH,          // search for the page of results, with the expanded query if there is one
+    RENDER,          // loading the fields of the hits on the page
+    TOTAL;
+
+    /**
+     * @return name used in metrics and timings
+     */
+    public String key() {
+        return name().toLowerCase();
+    }
+}
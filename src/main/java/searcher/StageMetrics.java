@@ -0,0 +1,60 @@
+package searcher;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.SynchronizedHistogram;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Latency histograms of every {@link Stage}, per expansion method, since the application started.
+ */
+public class StageMetrics {
+    private static final int SIGNIFICANT_DIGITS = 3;
+    private final ConcurrentHashMap<String, EnumMap<Stage, Histogram>> histograms = new ConcurrentHashMap<>();
+
+    /**
+     * Records the stages of one request, in microseconds.
+     */
+    void record(String expansionMethod, QueryTimings timings) {
+        EnumMap<Stage, Histogram> stages = histograms.computeIfAbsent(expansionMethod, method -> {
+            EnumMap<Stage, Histogram> byStage = new EnumMap<>(Stage.class);
+            for (Stage stage : Stage.values()) {
+                byStage.put(stage, new SynchronizedHistogram(SIGNIFICANT_DIGITS));
+            }
+            return byStage;
+        });
+        for (Map.Entry<Stage, Long> entry : timings.nanos().entrySet()) {
+            stages.get(entry.getKey()).recordValue(Math.max(entry.getValue() / 1000, 0));
+        }
+    }
+
+    /**
+     * @return count, mean and percentiles in milliseconds, by expansion method and stage
+     */
+    public Map<String, Map<String, Map<String, Number>>> snapshot() {
+        Map<String, Map<String, Map<String, Number>>> snapshot = new TreeMap<>();
+        for (Map.Entry<String, EnumMap<Stage, Histogram>> method : histograms.entrySet()) {
+            Map<String, Map<String, Number>> stages = new LinkedHashMap<>();
+            for (Map.Entry<Stage, Histogram> stage : method.getValue().entrySet()) {
+                Histogram histogram = stage.getValue().copy();
+                if (histogram.getTotalCount() == 0) {
+                    continue;
+                }
+                Map<String, Number> summary = new LinkedHashMap<>();
+                summary.put("count", histogram.getTotalCount());
+                summary.put("mean", histogram.getMean() / 1000);
+                summary.put("p50", histogram.getValueAtPercentile(50) / 1000.0);
+                summary.put("p90", histogram.getValueAtPercentile(90) / 1000.0);
+                summary.put("p99", histogram.getValueAtPercentile(99) / 1000.0);
+                summary.put("max", histogram.getMaxValue() / 1000.0);
+                stages.put(stage.getKey().key(), summary);
+            }
+            snapshot.put(method.getKey().toLowerCase(), stages);
+        }
+        return snapshot;
+    }
+}
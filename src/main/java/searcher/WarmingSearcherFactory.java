@@ -0,0 +1,35 @@
+package searcher;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.SearcherFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates searchers for the {@link org.apache.lucene.search.SearcherManager} and warms them up before they are handed
+ * out, so the first requests after a refresh do not pay for loading the new segments.
+ */
+public class WarmingSearcherFactory extends SearcherFactory {
+    private static final int WARM_UP_HITS = 10;
+    private final List<Query> warmUpQueries;
+
+    public WarmingSearcherFactory(List<Query> warmUpQueries) {
+        this.warmUpQueries = new ArrayList<>(warmUpQueries);
+    }
+
+    @Override
+    public IndexSearcher newSearcher(IndexReader reader, IndexReader previousReader) throws IOException {
+        IndexSearcher searcher = new IndexSearcher(reader);
+        long start = System.currentTimeMillis();
+        for (Query query : warmUpQueries) {
+            searcher.search(query, WARM_UP_HITS);
+        }
+        System.out.println("Warmed up searcher for " + reader.maxDoc() + " documents in "
+                + (System.currentTimeMillis() - start) + "ms");
+        return searcher;
+    }
+}
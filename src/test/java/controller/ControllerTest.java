@@ -0,0 +1,67 @@
+package controller;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import searcher.Page;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Requests for pages that do not exist are refused before anything is searched, so the controller needs no index.
+ */
+public class ControllerTest {
+    private ExecutorService executor;
+    private Controller controller;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newSingleThreadExecutor();
+        controller = new Controller(null, executor, 1000, 1);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private void assertBadRequest(String name, String value) {
+        Map<String, String> query = new HashMap<>();
+        query.put("q", "pizza");
+        query.put("applyPR", "true");
+        query.put("exp", "none");
+        query.put(name, value);
+        try {
+            controller.get(query);
+            fail("expected IllegalArgumentException for " + name + "=" + value);
+        } catch (IllegalArgumentException expected) {
+            // answered with 400 by badRequest
+        }
+    }
+
+    @Test
+    public void invalidPagesAreBadRequests() throws NoSuchMethodException {
+        assertBadRequest("searchAfter", "not a cursor");
+        assertBadRequest("searchAfter", "AAAA");
+        assertBadRequest("page", "0");
+        assertBadRequest("page", String.valueOf(Page.MAX_WINDOW / Page.MAX_SIZE + 1));
+        assertBadRequest("size", "0");
+        assertBadRequest("size", String.valueOf(Page.MAX_SIZE + 1));
+
+        Method handler = Controller.class.getMethod("badRequest", IllegalArgumentException.class);
+        assertArrayEquals(new Class<?>[]{IllegalArgumentException.class},
+                handler.getAnnotation(ExceptionHandler.class).value());
+        assertEquals(HttpStatus.BAD_REQUEST, handler.getAnnotation(ResponseStatus.class).value());
+    }
+}
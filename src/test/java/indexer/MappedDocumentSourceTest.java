@@ -0,0 +1,125 @@
+package indexer;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import queryExpansion.ContentsAnalyzer;
+import queryExpansion.Stopwords;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class MappedDocumentSourceTest {
+    // ascii, two and three byte characters and surrogate pairs, which take four bytes and two chars
+    private static final String TEXT = "pizza café €5 🍕 and 🍺🍺, 日本";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static String readAll(Reader reader, int chunk) throws IOException {
+        StringBuilder text = new StringBuilder();
+        char[] buffer = new char[chunk + 2];
+        int read;
+        while ((read = reader.read(buffer, 1, chunk)) != -1) {
+            text.append(buffer, 1, read);
+        }
+        return text.toString();
+    }
+
+    private Path write(String text) throws IOException {
+        Path file = folder.newFile().toPath();
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    @Test
+    public void readAndMappedDocumentsHaveTheSameContent() throws IOException {
+        Path file = write(TEXT);
+        int bytes = TEXT.getBytes(StandardCharsets.UTF_8).length;
+        for (long threshold : new long[]{0, bytes, bytes + 1, MappedDocumentSource.DEFAULT_MAP_THRESHOLD}) {
+            DocumentSource.Content content = new MappedDocumentSource(threshold).open(file);
+            assertEquals(bytes, content.length());
+            assertEquals(TEXT, content.text());
+            assertEquals(TEXT, readAll(content.reader(), 64));
+            // every reader starts from the beginning
+            assertEquals(TEXT, readAll(content.reader(), 64));
+        }
+    }
+
+    @Test
+    public void emptyDocument() throws IOException {
+        Path file = write("");
+        for (long threshold : new long[]{0, 1}) {
+            DocumentSource.Content content = new MappedDocumentSource(threshold).open(file);
+            assertEquals(0, content.length());
+            assertEquals("", content.text());
+            assertEquals("", readAll(content.reader(), 8));
+        }
+    }
+
+    @Test
+    public void surrogatePairsAcrossReads() throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(TEXT.getBytes(StandardCharsets.UTF_8));
+        for (int chunk = 1; chunk <= TEXT.length() + 1; chunk++) {
+            Reader reader = new MappedDocumentSource.Utf8Reader(bytes.duplicate());
+            assertEquals("chunk " + chunk, TEXT, readAll(reader, chunk));
+        }
+    }
+
+    private static List<String> tokens(Reader reader) throws IOException {
+        List<String> tokens = new ArrayList<>();
+        try (TokenStream stream = new ContentsAnalyzer(Stopwords.defaults(), false).tokenStream("contents", reader)) {
+            CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                tokens.add(term.toString());
+            }
+            stream.end();
+        }
+        return tokens;
+    }
+
+    @Test
+    public void surrogatePairsAcrossAnalyzerBuffers() throws IOException {
+        // the tokenizer reads 4096 chars at a time, move a pair and a letter of four bytes across that boundary
+        for (int offset = 4090; offset < 4100; offset++) {
+            StringBuilder text = new StringBuilder();
+            while (text.length() < offset) {
+                text.append("pizza ");
+            }
+            text.setLength(offset);
+            text.append("🍕𝒜bc 日本 pizza");
+            ByteBuffer bytes = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+            assertEquals("offset " + offset, tokens(new StringReader(text.toString())),
+                    tokens(new MappedDocumentSource.Utf8Reader(bytes)));
+        }
+    }
+
+    @Test
+    public void malformedInputIsReplaced() throws IOException {
+        byte[] bytes = {'a', (byte) 0xff, 'b', (byte) 0xf0, (byte) 0x9f};
+        String expected = new String(bytes, StandardCharsets.UTF_8);
+        for (int chunk = 1; chunk <= 4; chunk++) {
+            assertEquals(expected, readAll(new MappedDocumentSource.Utf8Reader(ByteBuffer.wrap(bytes)), chunk));
+        }
+    }
+
+    @Test
+    public void closedReaderIsAtEnd() throws IOException {
+        Reader reader = new MappedDocumentSource.Utf8Reader(ByteBuffer.wrap(TEXT.getBytes(StandardCharsets.UTF_8)));
+        assertEquals('p', reader.read());
+        reader.close();
+        assertEquals(-1, reader.read());
+    }
+}
@@ -0,0 +1,82 @@
+package indexer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class MetaFieldReaderTest {
+    private static final String FIRST = "{\"recno\":\"0\",\"url\":\"http://example.com/a\",\"title\":\"Pizza\","
+            + "\"pagerank\":0.25,\"outdegree\":\"3\"}";
+    // no title, the url stands in for it when indexing
+    private static final String SECOND = "{\"recno\":\"1\",\"url\":\"http://example.com/b\",\"pagerank\":1.5E-4,"
+            + "\"outdegree\":\"0\"}";
+    private static final String THIRD = "{\"url\":\"http://example.com/ü\",\"recno\":\"2\","
+            + "\"title\":\"Caf\\u00e9, \\\"ok\\\"\",\"pagerank\":0,\"outdegree\":\"1\"}";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private List<MetaField> read(String json) throws IOException {
+        Path file = folder.newFile().toPath();
+        Files.write(file, json.getBytes(StandardCharsets.UTF_8));
+        List<MetaField> records = new ArrayList<>();
+        try (MetaFieldReader reader = new MetaFieldReader(file)) {
+            while (reader.hasNext()) {
+                records.add(reader.next());
+            }
+            assertFalse(reader.hasNext());
+        }
+        return records;
+    }
+
+    private static void assertRecords(List<MetaField> records) {
+        assertEquals(3, records.size());
+        assertEquals("0", records.get(0).getRecno());
+        assertEquals("http://example.com/a", records.get(0).getUrl());
+        assertEquals("Pizza", records.get(0).getTitle());
+        assertEquals(0.25f, records.get(0).getPagerank(), 0);
+        assertEquals("3", records.get(0).getOutdegree());
+        assertEquals("1", records.get(1).getRecno());
+        assertNull(records.get(1).getTitle());
+        assertEquals(1.5e-4f, records.get(1).getPagerank(), 0);
+        assertEquals("2", records.get(2).getRecno());
+        assertEquals("http://example.com/ü", records.get(2).getUrl());
+        assertEquals("Café, \"ok\"", records.get(2).getTitle());
+        assertEquals(0f, records.get(2).getPagerank(), 0);
+    }
+
+    @Test
+    public void jsonLines() throws IOException {
+        assertRecords(read(FIRST + "\n" + SECOND + "\n" + THIRD + "\n"));
+        // without the last newline, with windows line ends and blank lines
+        assertRecords(read(FIRST + "\r\n\r\n" + SECOND + "\r\n" + THIRD));
+    }
+
+    @Test
+    public void jsonArray() throws IOException {
+        assertRecords(read("[" + FIRST + ",\n" + SECOND + ",\n" + THIRD + "]"));
+        assertRecords(read("[\n  " + FIRST + ",\n  " + SECOND + ",\n  " + THIRD + "\n]\n"));
+    }
+
+    @Test
+    public void recordsSpanningLines() throws IOException {
+        assertRecords(read(FIRST.replace(",", ",\n") + "\n" + SECOND + " " + THIRD));
+    }
+
+    @Test
+    public void emptyFiles() throws IOException {
+        assertEquals(0, read("").size());
+        assertEquals(0, read("[]").size());
+    }
+}
@@ -0,0 +1,173 @@
+package queryExpansion;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.TermQuery;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class GlobalCooccurrenceTest {
+    // sorted by their UTF-8 bytes, 27 of them, so the rows start after a byte of padding
+    private static final List<String> TERMS = Arrays.asList("a", "ab", "café", "pizza", "zz", "ärger", "日本");
+    private static final int NEIGHBORS = 3;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path file() {
+        return folder.getRoot().toPath().resolve(GlobalCooccurrence.FILE_NAME);
+    }
+
+    private static Path tempFile(Path file) {
+        return file.resolveSibling(file.getFileName() + ".tmp");
+    }
+
+    private void write(Path file) throws IOException {
+        try (GlobalCooccurrence.Writer writer = new GlobalCooccurrence.Writer(file, TERMS, NEIGHBORS)) {
+            // more neighbors than are kept, fewer, none, and the last terms are left to finish
+            writer.addRow(new int[]{3, 2, 1, 6}, new float[]{4, 3, 2, 1}, 4);
+            writer.addRow(new int[]{6, 0, 99}, new float[]{0.5f, 0.25f, 7}, 2);
+            writer.addRow(new int[0], new float[0], 0);
+            writer.addRow(new int[]{5, 4, 2}, new float[]{3, 2, 1}, 3);
+            writer.finish();
+        }
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        Path file = file();
+        write(file);
+        assertFalse(Files.exists(tempFile(file)));
+        int termsEnd = 16 + 4 * (TERMS.size() + 1) + 27;
+        assertEquals(termsEnd + 1 + TERMS.size() * NEIGHBORS * 8, Files.size(file));
+
+        GlobalCooccurrence cooccurrence = GlobalCooccurrence.open(file);
+        assertEquals(TERMS.size(), cooccurrence.size());
+        for (int id = 0; id < TERMS.size(); id++) {
+            assertEquals(TERMS.get(id), cooccurrence.term(id));
+            assertEquals(id, cooccurrence.id(TERMS.get(id)));
+        }
+        for (String missing : new String[]{"", "b", "cafe", "zzz", "ä", "日本語"}) {
+            assertEquals(missing, -1, cooccurrence.id(missing));
+        }
+        assertArrayEquals(new int[]{3, 2, 1}, cooccurrence.neighbors(0));
+        assertArrayEquals(new float[]{4, 3, 2}, cooccurrence.weights(0), 0);
+        assertArrayEquals(new int[]{6, 0}, cooccurrence.neighbors(1));
+        assertArrayEquals(new float[]{0.5f, 0.25f}, cooccurrence.weights(1), 0);
+        assertArrayEquals(new int[]{5, 4, 2}, cooccurrence.neighbors(3));
+        for (int id : new int[]{2, 4, 5, 6}) {
+            assertArrayEquals(new int[0], cooccurrence.neighbors(id));
+            assertArrayEquals(new float[0], cooccurrence.weights(id), 0);
+        }
+    }
+
+    @Test
+    public void expand() throws IOException {
+        write(file());
+        GlobalCooccurrence cooccurrence = GlobalCooccurrence.open(file());
+        BooleanQuery query = new BooleanQuery.Builder()
+                .add(new TermQuery(new Term(FeedbackTerms.FIELD, "a")), BooleanClause.Occur.SHOULD)
+                .add(new TermQuery(new Term(FeedbackTerms.FIELD, "pizza")), BooleanClause.Occur.SHOULD)
+                .add(new TermQuery(new Term(FeedbackTerms.FIELD, "unknown")), BooleanClause.Occur.SHOULD)
+                .add(new TermQuery(new Term("title", "zz")), BooleanClause.Occur.SHOULD)
+                .build();
+        // neighbors picked once, then the query terms left
+        assertEquals(Arrays.asList("pizza", "café", "ärger", "zz", "a", "unknown"),
+                cooccurrence.expand(query, 2).getTerms());
+    }
+
+    @Test
+    public void rebuildKeepsOpenFiles() throws IOException {
+        Path file = file();
+        write(file);
+        GlobalCooccurrence old = GlobalCooccurrence.open(file);
+        try (GlobalCooccurrence.Writer writer = new GlobalCooccurrence.Writer(file, Arrays.asList("x", "y"), 1)) {
+            writer.addRow(new int[]{1}, new float[]{1}, 1);
+            writer.finish();
+        }
+        assertFalse(Files.exists(tempFile(file)));
+        // the old mapping still reads the file it was opened on
+        assertEquals(TERMS.size(), old.size());
+        assertEquals("pizza", old.term(3));
+        assertArrayEquals(new int[]{3, 2, 1}, old.neighbors(0));
+        GlobalCooccurrence rebuilt = GlobalCooccurrence.open(file);
+        assertEquals(2, rebuilt.size());
+        assertArrayEquals(new int[]{1}, rebuilt.neighbors(0));
+        assertArrayEquals(new int[0], rebuilt.neighbors(1));
+    }
+
+    @Test
+    public void unfinishedWriterLeavesTargetAlone() throws IOException {
+        Path file = file();
+        write(file);
+        byte[] before = Files.readAllBytes(file);
+        try (GlobalCooccurrence.Writer writer = new GlobalCooccurrence.Writer(file, Arrays.asList("x", "y"), 1)) {
+            writer.addRow(new int[]{1}, new float[]{1}, 1);
+            assertTrue(Files.exists(tempFile(file)));
+        }
+        assertFalse(Files.exists(tempFile(file)));
+        assertArrayEquals(before, Files.readAllBytes(file));
+    }
+
+    @Test
+    public void invalidInput() throws IOException {
+        Path file = file();
+        for (List<String> terms : Arrays.asList(Arrays.asList("b", "a"), Arrays.asList("a", "a"),
+                Arrays.asList("ärger", "zz"))) {
+            try {
+                new GlobalCooccurrence.Writer(file, terms, 1).close();
+                fail("expected IllegalArgumentException for " + terms);
+            } catch (IllegalArgumentException expected) {
+                assertFalse(Files.exists(tempFile(file)));
+            }
+        }
+        List<String> one = Collections.singletonList("a");
+        try (GlobalCooccurrence.Writer writer = new GlobalCooccurrence.Writer(file, one, 1)) {
+            writer.addRow(new int[0], new float[0], 0);
+            try {
+                writer.addRow(new int[0], new float[0], 0);
+                fail("expected IllegalStateException");
+            } catch (IllegalStateException expected) {
+                // one row per term
+            }
+        }
+    }
+
+    @Test
+    public void corruptFiles() throws IOException {
+        Path file = file();
+        write(file);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+        assertNotOpened(file);
+        bytes[0] = 0;
+        Files.write(file, bytes);
+        assertNotOpened(file);
+        Files.write(file, new byte[8]);
+        assertNotOpened(file);
+    }
+
+    private static void assertNotOpened(Path file) {
+        try {
+            GlobalCooccurrence.open(file);
+            fail("expected IOException");
+        } catch (IOException expected) {
+            // BuildCooccurrence has to be run again
+        }
+    }
+}
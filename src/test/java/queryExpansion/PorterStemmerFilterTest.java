@@ -0,0 +1,102 @@
+package queryExpansion;
+
+import org.apache.lucene.analysis.CharArraySet;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.analysis.miscellaneous.SetKeywordMarkerFilter;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class PorterStemmerFilterTest {
+    // words every step of the algorithm changes, and some it leaves alone
+    private static final String[] WORDS = {
+            "caresses", "ponies", "ties", "caress", "cats", "feed", "agreed", "plastered", "bled", "motoring", "sing",
+            "conflated", "troubled", "sized", "hopping", "tanned", "falling", "hissing", "fizzed", "failing", "filing",
+            "happy", "sky", "relational", "conditional", "rational", "valenci", "hesitanci", "digitizer", "conformabli",
+            "radicalli", "differentli", "vileli", "analogousli", "vietnamization", "predication", "operator",
+            "feudalism", "decisiveness", "hopefulness", "callousness", "formaliti", "sensitiviti", "sensibiliti",
+            "triplicate", "formative", "formalize", "electriciti", "electrical", "hopeful", "goodness", "revival",
+            "allowance", "inference", "airliner", "gyroscopic", "adjustable", "defensible", "irritant", "replacement",
+            "adjustment", "dependent", "adoption", "homologou", "communism", "activate", "angulariti", "homologous",
+            "effective", "bowdlerize", "probate", "rate", "cease", "controll", "roll", "generalizations", "oscillators",
+            "a", "is", "as", "pizza", "pizzas", "running", "runner", "searching", "searched", "expansion", "expanded",
+            "antidisestablishmentarianism", "pneumonoultramicroscopicsilicovolcanoconiosis",
+            "supercalifragilisticexpialidociousnessesnessesnessesnesses"
+    };
+
+    private static String stem(String word) {
+        Stemmer stemmer = new Stemmer();
+        stemmer.add(word.toCharArray(), word.length());
+        stemmer.stem();
+        return stemmer.toString();
+    }
+
+    private static List<String> filter(List<String> words, CharArraySet keywords) throws IOException {
+        Tokenizer tokenizer = new WhitespaceTokenizer();
+        tokenizer.setReader(new StringReader(String.join(" ", words)));
+        List<String> tokens = new ArrayList<>();
+        try (TokenStream stream = new PorterStemmerFilter(new SetKeywordMarkerFilter(tokenizer, keywords))) {
+            CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                tokens.add(term.toString());
+            }
+            stream.end();
+        }
+        return tokens;
+    }
+
+    private static void assertStems(List<String> words) throws IOException {
+        List<String> expected = new ArrayList<>();
+        for (String word : words) {
+            expected.add(stem(word));
+        }
+        assertEquals(expected, filter(words, CharArraySet.EMPTY_SET));
+    }
+
+    @Test
+    public void agreesWithStemmer() throws IOException {
+        List<String> words = Arrays.asList(WORDS);
+        assertStems(words);
+        // a short word after a long one, the term buffer is reused between tokens
+        List<String> reversed = new ArrayList<>(words);
+        Collections.reverse(reversed);
+        assertStems(reversed);
+    }
+
+    @Test
+    public void agreesWithStemmerOnRandomWords() throws IOException {
+        Random random = new Random(21);
+        String[] suffixes = {"", "s", "es", "ies", "ed", "ing", "ly", "ness", "ational", "ization", "fulness", "ement"};
+        List<String> words = new ArrayList<>();
+        for (int n = 0; n < 5000; n++) {
+            StringBuilder word = new StringBuilder();
+            int length = 1 + random.nextInt(random.nextInt(10) == 0 ? 60 : 10);
+            for (int c = 0; c < length; c++) {
+                boolean vowel = random.nextInt(4) == 0;
+                word.append(vowel ? "aeiouy".charAt(random.nextInt(6)) : (char) ('a' + random.nextInt(26)));
+            }
+            word.append(suffixes[random.nextInt(suffixes.length)]);
+            words.add(word.toString());
+        }
+        assertStems(words);
+    }
+
+    @Test
+    public void keywordsAreLeftAlone() throws IOException {
+        CharArraySet keywords = new CharArraySet(Arrays.asList("running", "generalizations"), false);
+        List<String> words = Arrays.asList("running", "runs", "generalizations", "generalization");
+        assertEquals(Arrays.asList("running", "run", "generalizations", "gener"), filter(words, keywords));
+    }
+}
@@ -0,0 +1,180 @@
+package queryExpansion;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the table against a {@link HashMap} keyed by the packed pair, on random input.
+ */
+public class TermPairAccumulatorTest {
+    private static final int TERMS = 200;
+
+    // whole values, so sums do not depend on the order they are added in, and few of them, so there are many ties
+    private static Map<Long, Float> fill(TermPairAccumulator pairs, Random random, int adds, int[] ids) {
+        Map<Long, Float> expected = new HashMap<>();
+        for (int i = 0; i < adds; i++) {
+            int first = ids[random.nextInt(ids.length)];
+            int second = ids[random.nextInt(ids.length)];
+            float value = 1 + random.nextInt(3);
+            pairs.add(first, second, value);
+            expected.merge(TermPairAccumulator.pack(first, second), value, Float::sum);
+        }
+        return expected;
+    }
+
+    private static int[] ids(int count) {
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = i;
+        }
+        return ids;
+    }
+
+    // highest first, ties by the lower packed pair
+    private static List<Long> ranked(Map<Long, Float> pairs) {
+        List<Long> keys = new ArrayList<>(pairs.keySet());
+        keys.sort((a, b) -> TermPairAccumulator.compare(a, pairs.get(a), b, pairs.get(b)));
+        return keys;
+    }
+
+    private static void assertSameValues(Map<Long, Float> expected, TermPairAccumulator pairs, int[] ids) {
+        assertEquals(expected.size(), pairs.size());
+        for (int first : ids) {
+            for (int second : ids) {
+                Float value = expected.get(TermPairAccumulator.pack(first, second));
+                assertEquals(value != null, pairs.contains(first, second));
+                assertEquals(value != null ? value : 0, pairs.get(first, second), 0);
+            }
+        }
+    }
+
+    @Test
+    public void matchesHashMapThroughResizes() {
+        Random random = new Random(1);
+        int[] ids = ids(TERMS);
+        // starts at the smallest table, so it is resized many times
+        TermPairAccumulator pairs = new TermPairAccumulator();
+        Map<Long, Float> expected = fill(pairs, random, 50000, ids);
+        assertTrue(expected.size() > 10000);
+        assertSameValues(expected, pairs, ids);
+    }
+
+    @Test
+    public void packsLargeIds() {
+        int[] ids = {0, 1, 65535, 65536, Integer.MAX_VALUE - 1, Integer.MAX_VALUE};
+        for (int first : ids) {
+            for (int second : ids) {
+                long pair = TermPairAccumulator.pack(first, second);
+                assertEquals(first, TermPairAccumulator.first(pair));
+                assertEquals(second, TermPairAccumulator.second(pair));
+            }
+        }
+        Random random = new Random(2);
+        TermPairAccumulator pairs = new TermPairAccumulator(4);
+        Map<Long, Float> expected = fill(pairs, random, 1000, ids);
+        assertSameValues(expected, pairs, ids);
+    }
+
+    @Test
+    public void updateAndClear() {
+        Random random = new Random(3);
+        int[] ids = ids(50);
+        TermPairAccumulator pairs = new TermPairAccumulator(100);
+        Map<Long, Float> expected = fill(pairs, random, 2000, ids);
+        pairs.update((first, second, value) -> value * 2 + first - second);
+        expected.replaceAll((pair, value) ->
+                value * 2 + TermPairAccumulator.first(pair) - TermPairAccumulator.second(pair));
+        assertSameValues(expected, pairs, ids);
+
+        pairs.clear();
+        assertEquals(0, pairs.size());
+        assertFalse(pairs.contains(ids[0], ids[0]));
+        expected = fill(pairs, random, 2000, ids);
+        assertSameValues(expected, pairs, ids);
+    }
+
+    @Test
+    public void topKBreaksTiesByLowerId() {
+        Random random = new Random(4);
+        int[] ids = ids(TERMS);
+        TermPairAccumulator pairs = new TermPairAccumulator();
+        Map<Long, Float> expected = fill(pairs, random, 20000, ids);
+        for (int first = 0; first < TERMS; first += 7) {
+            int from = first;
+            Map<Long, Float> row = new HashMap<>();
+            expected.forEach((pair, value) -> {
+                if (TermPairAccumulator.first(pair) == from && TermPairAccumulator.second(pair) % 3 != 0) {
+                    row.put(pair, value);
+                }
+            });
+            List<Long> ranked = ranked(row);
+            for (int k : new int[]{1, 5, 1000}) {
+                int[] top = pairs.topK(first, k, second -> second % 3 != 0);
+                assertEquals(Math.min(k, ranked.size()), top.length);
+                for (int i = 0; i < top.length; i++) {
+                    assertEquals(TermPairAccumulator.second(ranked.get(i)), top[i]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void topPairs() {
+        Random random = new Random(5);
+        TermPairAccumulator pairs = new TermPairAccumulator();
+        Map<Long, Float> expected = fill(pairs, random, 5000, ids(TERMS));
+        List<Long> ranked = ranked(expected);
+        for (int k : new int[]{1, 50, expected.size() + 1}) {
+            long[] top = pairs.topPairs(k);
+            assertEquals(Math.min(k, ranked.size()), top.length);
+            for (int i = 0; i < top.length; i++) {
+                assertEquals(ranked.get(i).longValue(), top[i]);
+            }
+        }
+    }
+
+    @Test
+    public void topKByFirstMatchesTopKPerTerm() {
+        Random random = new Random(6);
+        TermPairAccumulator pairs = new TermPairAccumulator();
+        fill(pairs, random, 20000, ids(TERMS));
+        int from = 20;
+        int to = 90;
+        int k = 4;
+        List<Integer> firsts = new ArrayList<>();
+        List<Integer> seconds = new ArrayList<>();
+        pairs.topKByFirst(from, to, k, (first, second, value) -> {
+            assertEquals(pairs.get(first, second), value, 0);
+            firsts.add(first);
+            seconds.add(second);
+        });
+        int i = 0;
+        for (int first = from; first < to; first++) {
+            for (int second : pairs.topK(first, k, id -> true)) {
+                assertEquals(first, firsts.get(i).intValue());
+                assertEquals(second, seconds.get(i).intValue());
+                i++;
+            }
+        }
+        assertEquals(firsts.size(), i);
+    }
+
+    @Test
+    public void emptyTable() {
+        TermPairAccumulator pairs = new TermPairAccumulator(0);
+        assertEquals(0, pairs.size());
+        assertEquals(0, pairs.get(1, 2), 0);
+        assertArrayEquals(new int[0], pairs.topK(1, 3, id -> true));
+        assertArrayEquals(new long[0], pairs.topPairs(3));
+    }
+}
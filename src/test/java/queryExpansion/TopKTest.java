@@ -0,0 +1,113 @@
+package queryExpansion;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class TopKTest {
+    // ids rank by their score, highest first, then the lower id first
+    private static TopK.Order byScore(int[] scores) {
+        return (id1, id2) -> {
+            int byScore = Integer.compare(scores[id2], scores[id1]);
+            return byScore != 0 ? byScore : Integer.compare(id1, id2);
+        };
+    }
+
+    private static int[] expected(int[] scores, int k) {
+        List<Integer> ids = new ArrayList<>();
+        for (int id = 0; id < scores.length; id++) {
+            ids.add(id);
+        }
+        TopK.Order order = byScore(scores);
+        ids.sort(order::compare);
+        return ids.subList(0, Math.min(k, ids.size())).stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static int[] select(int[] scores, int k, int[] offerOrder) {
+        TopK top = new TopK(k, byScore(scores));
+        for (int id : offerOrder) {
+            top.offer(id);
+        }
+        assertEquals(Math.min(k, scores.length), top.size());
+        return top.toSortedArray();
+    }
+
+    private static int[] shuffled(int n, Random random) {
+        int[] ids = new int[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = i;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int id = ids[i];
+            ids[i] = ids[j];
+            ids[j] = id;
+        }
+        return ids;
+    }
+
+    @Test
+    public void keepsTheBestInOrder() {
+        Random random = new Random(1);
+        for (int n : new int[]{1, 2, 10, 100, 1000}) {
+            int[] scores = new int[n];
+            for (int i = 0; i < n; i++) {
+                scores[i] = random.nextInt(1000000);
+            }
+            for (int k : new int[]{1, 3, n / 2 + 1, n}) {
+                assertArrayEquals("n " + n + " k " + k, expected(scores, k), select(scores, k, shuffled(n, random)));
+            }
+        }
+    }
+
+    @Test
+    public void tiesAreBrokenByTheOrder() {
+        Random random = new Random(2);
+        int[] scores = new int[500];
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = random.nextInt(4);
+        }
+        for (int k : new int[]{1, 10, 200}) {
+            // whichever order the ids come in, ties are broken the same way
+            for (int round = 0; round < 5; round++) {
+                assertArrayEquals(expected(scores, k), select(scores, k, shuffled(scores.length, random)));
+            }
+        }
+    }
+
+    @Test
+    public void kLargerThanN() {
+        int[] scores = {5, 9, 1, 9};
+        assertArrayEquals(new int[]{1, 3, 0, 2}, select(scores, 10, new int[]{0, 1, 2, 3}));
+        assertArrayEquals(new int[]{1, 3, 0, 2}, select(scores, 10, new int[]{3, 2, 1, 0}));
+    }
+
+    @Test
+    public void keepsNothing() {
+        int[] scores = {5, 9};
+        assertArrayEquals(new int[0], new TopK(0, byScore(scores)).toSortedArray());
+        TopK none = new TopK(0, byScore(scores));
+        none.offer(0);
+        none.offer(1);
+        assertEquals(0, none.size());
+        assertArrayEquals(new int[0], none.toSortedArray());
+        assertArrayEquals(new int[0], new TopK(3, byScore(scores)).toSortedArray());
+    }
+
+    @Test
+    public void sortingLeavesTheHeapAsItWas() {
+        int[] scores = {4, 8, 6, 2, 7};
+        TopK top = new TopK(3, byScore(scores));
+        for (int id = 0; id < scores.length; id++) {
+            top.offer(id);
+        }
+        assertArrayEquals(new int[]{1, 4, 2}, top.toSortedArray());
+        top.offer(0);
+        assertArrayEquals(new int[]{1, 4, 2}, top.toSortedArray());
+    }
+}
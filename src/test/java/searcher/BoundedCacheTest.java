@@ -0,0 +1,124 @@
+package searcher;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class BoundedCacheTest {
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    // a string weighs its length
+    private static BoundedCache<String, String> byLength(long maxWeight) {
+        return new BoundedCache<>(maxWeight, DAY, (key, value) -> value.length());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        BoundedCache<String, String> cache = new BoundedCache<>(3, DAY);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.put("c", "3");
+        // reading a makes b the least recently used
+        assertEquals("1", cache.get("a"));
+        cache.put("d", "4");
+        assertNull(cache.get("b"));
+        assertEquals("1", cache.get("a"));
+        assertEquals("3", cache.get("c"));
+        assertEquals("4", cache.get("d"));
+        // replacing c counts as using it
+        cache.put("c", "5");
+        cache.put("e", "6");
+        assertNull(cache.get("a"));
+        assertEquals("5", cache.get("c"));
+        assertEquals(3, cache.stats().getSize());
+        assertEquals(2, cache.stats().getEvictions());
+    }
+
+    @Test
+    public void expiresAfterTtl() throws InterruptedException {
+        BoundedCache<String, String> cache = new BoundedCache<>(10, 20, (key, value) -> value.length());
+        cache.put("a", "aaaa");
+        assertEquals("aaaa", cache.get("a"));
+        Thread.sleep(50);
+        cache.put("b", "bb");
+        assertNull(cache.get("a"));
+        assertEquals("bb", cache.get("b"));
+        // the expired entry no longer counts against the cache
+        assertEquals(1, cache.stats().getSize());
+        assertEquals(2, cache.stats().getWeight());
+        assertEquals(1, cache.stats().getEvictions());
+    }
+
+    @Test
+    public void countsHitsAndMisses() {
+        BoundedCache<String, String> cache = new BoundedCache<>(2, DAY);
+        cache.put("a", "1");
+        cache.get("a");
+        cache.get("a");
+        cache.get("b");
+        assertEquals(2, cache.stats().getHits());
+        assertEquals(1, cache.stats().getMisses());
+        // clearing keeps the counts
+        cache.clear();
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.stats().getSize());
+        assertEquals(0, cache.stats().getWeight());
+        assertEquals(2, cache.stats().getHits());
+        assertEquals(2, cache.stats().getMisses());
+    }
+
+    @Test
+    public void evictsByWeight() {
+        BoundedCache<String, String> cache = byLength(10);
+        cache.put("a", "aaaa");
+        cache.put("b", "bbbb");
+        assertEquals(8, cache.stats().getWeight());
+        cache.put("c", "cccc");
+        assertNull(cache.get("a"));
+        assertEquals("bbbb", cache.get("b"));
+        assertEquals("cccc", cache.get("c"));
+        assertEquals(8, cache.stats().getWeight());
+        assertEquals(1, cache.stats().getEvictions());
+    }
+
+    @Test
+    public void replacingAnEntryReplacesItsWeight() {
+        BoundedCache<String, String> cache = byLength(10);
+        cache.put("a", "aaaa");
+        cache.put("a", "aaaaaa");
+        assertEquals("aaaaaa", cache.get("a"));
+        assertEquals(1, cache.stats().getSize());
+        assertEquals(6, cache.stats().getWeight());
+    }
+
+    @Test
+    public void oversizeEntryIsNotKept() {
+        BoundedCache<String, String> cache = byLength(10);
+        cache.put("b", "bbbb");
+        cache.put("a", "aaaaaaaaaaa");
+        assertNull(cache.get("a"));
+        assertEquals("bbbb", cache.get("b"));
+        assertEquals(4, cache.stats().getWeight());
+    }
+
+    @Test
+    public void oversizeEntryRemovesTheOneItReplaces() {
+        BoundedCache<String, String> cache = byLength(10);
+        cache.put("a", "aaaa");
+        cache.put("b", "bbbb");
+        cache.put("a", "aaaaaaaaaaa");
+        assertNull(cache.get("a"));
+        assertEquals("bbbb", cache.get("b"));
+        assertEquals(1, cache.stats().getSize());
+        assertEquals(4, cache.stats().getWeight());
+    }
+
+    @Test
+    public void zeroWeightKeepsNothing() {
+        BoundedCache<String, String> cache = new BoundedCache<>(0, DAY);
+        cache.put("a", "aaaa");
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.stats().getSize());
+    }
+}
@@ -0,0 +1,86 @@
+package searcher;
+
+import indexer.BuildCooccurrence;
+import indexer.IndexFiles;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * A small index of random documents with its co-occurrence file, for tests that search. The same seed always gives the
+ * same documents.
+ */
+class GeneratedIndex {
+    private static final int DOCS = 300;
+    private static final int WORDS_PER_DOC = 120;
+
+    private final String[] vocabulary;
+    final Path index;
+
+    /**
+     * Writes the documents and their metadata to {@code dir} and indexes them into {@code dir/index}.
+     */
+    GeneratedIndex(Path dir, long seed) throws IOException {
+        Random random = new Random(seed);
+        vocabulary = new String[400];
+        for (int i = 0; i < vocabulary.length; i++) {
+            StringBuilder word = new StringBuilder();
+            int length = 5 + random.nextInt(4);
+            for (int c = 0; c < length; c++) {
+                word.append((char) ('a' + random.nextInt(26)));
+            }
+            vocabulary[i] = word.toString();
+        }
+
+        Path docs = Files.createDirectories(dir.resolve("docs"));
+        Path metadata = dir.resolve("meta.jsonl");
+        try (BufferedWriter meta = Files.newBufferedWriter(metadata, StandardCharsets.UTF_8)) {
+            for (int d = 0; d < DOCS; d++) {
+                StringBuilder text = new StringBuilder();
+                for (int w = 0; w < WORDS_PER_DOC; w++) {
+                    text.append(w > 0 ? " " : "").append(word(random));
+                }
+                Files.write(docs.resolve(String.valueOf(d)), text.toString().getBytes(StandardCharsets.UTF_8));
+                meta.write("{\"recno\":\"" + d + "\",\"url\":\"http://example.com/" + d + "\",\"title\":\"Document " + d
+                        + "\",\"pagerank\":" + random.nextFloat() + ",\"outdegree\":\"1\"}");
+                meta.newLine();
+            }
+        }
+
+        index = dir.resolve("index");
+        IndexFiles.main(new String[]{"-index", index.toString(), "-docs", docs.toString(),
+                "-metadata", metadata.toString()});
+        BuildCooccurrence.main(new String[]{"-index", index.toString()});
+    }
+
+    /**
+     * @return a word of the documents, the first words of the vocabulary are the most frequent ones, so most pairs of
+     * them co-occur
+     */
+    String word(Random random) {
+        double r = random.nextDouble();
+        return vocabulary[(int) (vocabulary.length * r * r)];
+    }
+
+    /**
+     * @return the most frequent word
+     */
+    String commonWord() {
+        return vocabulary[0];
+    }
+
+    /**
+     * @return settings of a search over the index, every request runs the whole search, none of it comes from a cache
+     */
+    SearchSettings settings() {
+        SearchSettings settings = new SearchSettings();
+        settings.setIndex(index.toString());
+        settings.setExpansionCacheSize(0);
+        settings.setResultCacheMaxBytes(0);
+        return settings;
+    }
+}
@@ -0,0 +1,101 @@
+package searcher;
+
+import org.apache.lucene.search.ScoreDoc;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class PageTest {
+
+    private static void assertInvalid(Runnable page) {
+        try {
+            page.run();
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            // Controller answers these with 400
+        }
+    }
+
+    @Test
+    public void cursorRoundTrip() {
+        float[] scores = {0, 1.5f, -2.25f, Float.MIN_VALUE, Float.MAX_VALUE, Float.NaN};
+        int[] docs = {0, 1, 4711, Integer.MAX_VALUE};
+        for (float score : scores) {
+            for (int doc : docs) {
+                String cursor = Page.cursor(new ScoreDoc(doc, score));
+                // url safe, without padding
+                assertEquals(cursor, -1, cursor.indexOf('='));
+                assertEquals(cursor, -1, cursor.indexOf('+'));
+                assertEquals(cursor, -1, cursor.indexOf('/'));
+                Page page = Page.after(cursor, 10);
+                assertEquals(doc, page.getAfter().doc);
+                assertEquals(Float.floatToIntBits(score), Float.floatToIntBits(page.getAfter().score));
+                assertEquals(0, page.getFrom());
+                assertEquals(10, page.getCollect());
+                assertEquals(page, Page.after(cursor, 10));
+            }
+        }
+    }
+
+    @Test
+    public void malformedCursors() {
+        String valid = Page.cursor(new ScoreDoc(3, 1.5f));
+        for (String cursor : new String[]{"", "not a cursor", "!!!!", valid + "AA", valid.substring(2), "AAAA"}) {
+            assertInvalid(() -> Page.after(cursor, 10));
+        }
+        assertInvalid(() -> Page.after(valid, 0));
+        assertInvalid(() -> Page.after(valid, Page.MAX_SIZE + 1));
+    }
+
+    @Test
+    public void numberedPages() {
+        Page page = Page.number(3, 20);
+        assertNull(page.getAfter());
+        assertEquals(40, page.getFrom());
+        assertEquals(60, page.getCollect());
+        assertEquals(page, Page.number(3, 20));
+        assertNotEquals(page, Page.number(2, 20));
+        assertNotEquals(page, Page.number(3, 10));
+        assertNotEquals(page, Page.after(Page.cursor(new ScoreDoc(1, 1)), 20));
+    }
+
+    @Test
+    public void pagesEndAtMaxWindow() {
+        Page last = Page.number(Page.MAX_WINDOW / Page.MAX_SIZE, Page.MAX_SIZE);
+        assertEquals(Page.MAX_WINDOW, last.getCollect());
+        Page.number(Page.MAX_WINDOW, 1);
+        assertInvalid(() -> Page.number(Page.MAX_WINDOW / Page.MAX_SIZE + 1, Page.MAX_SIZE));
+        assertInvalid(() -> Page.number(Page.MAX_WINDOW + 1, 1));
+        // a page number whose window overflows an int
+        assertInvalid(() -> Page.number(Integer.MAX_VALUE, Page.MAX_SIZE));
+        assertInvalid(() -> Page.number(0, 10));
+        assertInvalid(() -> Page.number(-1, 10));
+        assertInvalid(() -> Page.number(1, 0));
+        assertInvalid(() -> Page.number(1, Page.MAX_SIZE + 1));
+    }
+
+    @Test
+    public void indexAfterFollowsSearchAfterOrder() {
+        // by score, highest first, then by document
+        ScoreDoc[] pool = {
+                new ScoreDoc(5, 3f),
+                new ScoreDoc(2, 2f),
+                new ScoreDoc(7, 2f),
+                new ScoreDoc(9, 2f),
+                new ScoreDoc(1, 1f)
+        };
+        assertEquals(0, Search.indexAfter(pool, new ScoreDoc(0, 4f)));
+        assertEquals(1, Search.indexAfter(pool, new ScoreDoc(5, 3f)));
+        assertEquals(2, Search.indexAfter(pool, new ScoreDoc(2, 2f)));
+        // a document between two tied ones, as after a refresh
+        assertEquals(2, Search.indexAfter(pool, new ScoreDoc(6, 2f)));
+        assertEquals(4, Search.indexAfter(pool, new ScoreDoc(9, 2f)));
+        assertEquals(4, Search.indexAfter(pool, new ScoreDoc(0, 1.5f)));
+        assertEquals(5, Search.indexAfter(pool, new ScoreDoc(1, 1f)));
+        assertEquals(5, Search.indexAfter(pool, new ScoreDoc(0, 0.5f)));
+        assertEquals(0, Search.indexAfter(new ScoreDoc[0], new ScoreDoc(0, 1f)));
+    }
+}
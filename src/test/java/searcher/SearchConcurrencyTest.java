@@ -0,0 +1,121 @@
+package searcher;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs every expansion method from a thread pool against a small generated index and checks each response is the one
+ * the same request gets when it runs alone.
+ */
+public class SearchConcurrencyTest {
+    private static final String[] METHODS = {"none", "rochio", "association", "metric", "scalar", "global"};
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 5;
+
+    @ClassRule
+    public static TemporaryFolder folder = new TemporaryFolder();
+
+    private static GeneratedIndex index;
+    private static Search search;
+
+    @BeforeClass
+    public static void buildIndex() throws Exception {
+        index = new GeneratedIndex(folder.getRoot().toPath(), 42);
+        search = new Search(index.settings());
+    }
+
+    @AfterClass
+    public static void close() throws Exception {
+        if (search != null) {
+            search.close();
+        }
+    }
+
+    private static String response(Request request) {
+        QueryHit queryHit = search.queryIndex(request.query, request.usePageRank, request.method);
+        return queryHit.getTotal_hits() + " " + queryHit.getNext_cursor() + " " + queryHit;
+    }
+
+    @Test
+    public void concurrentRequestsMatchSequentialOnes() throws Exception {
+        Random random = new Random(7);
+        List<Request> requests = new ArrayList<>();
+        for (String method : METHODS) {
+            for (int q = 0; q < 12; q++) {
+                String query = q % 2 == 0 ? index.word(random) : index.word(random) + " " + index.word(random);
+                requests.add(new Request(query, method, q % 3 != 0));
+            }
+        }
+        List<String> expected = new ArrayList<>();
+        for (Request request : requests) {
+            String response = response(request);
+            assertTrue(request + " has no hits", !response.startsWith("0 "));
+            expected.add(response);
+        }
+
+        List<Integer> order = new ArrayList<>();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int i = 0; i < requests.size(); i++) {
+                order.add(i);
+            }
+        }
+        Collections.shuffle(order, random);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<String>> responses = new ArrayList<>();
+            for (int i : order) {
+                Request request = requests.get(i);
+                responses.add(pool.submit(() -> response(request)));
+            }
+            for (int r = 0; r < order.size(); r++) {
+                int i = order.get(r);
+                assertEquals(requests.get(i).toString(), expected.get(i), responses.get(r).get());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void interruptedSearchReturnsNoHits() {
+        String query = index.commonWord();
+        for (String method : METHODS) {
+            Thread.currentThread().interrupt();
+            QueryHit cancelled = search.queryIndex(query, true, method);
+            assertTrue(method + " cleared the interrupt", Thread.interrupted());
+            assertEquals(method, 0, cancelled.getHits().size());
+            assertTrue(method, search.queryIndex(query, true, method).getHits().size() > 0);
+        }
+    }
+
+    private static class Request {
+        final String query;
+        final String method;
+        final boolean usePageRank;
+
+        Request(String query, String method, boolean usePageRank) {
+            this.query = query;
+            this.method = method;
+            this.usePageRank = usePageRank;
+        }
+
+        @Override
+        public String toString() {
+            return method + " '" + query + "'" + (usePageRank ? " with pagerank" : "");
+        }
+    }
+}
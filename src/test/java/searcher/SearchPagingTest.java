@@ -0,0 +1,131 @@
+package searcher;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Walks all pages of a query, by number and by cursor, with and without a rescore pool.
+ */
+public class SearchPagingTest {
+    private static final String[] METHODS = {"none", "metric", "global"};
+    private static final int POOL = 25;
+
+    @ClassRule
+    public static TemporaryFolder folder = new TemporaryFolder();
+
+    private static GeneratedIndex index;
+    private static Search search;
+    private static Search rescoring;
+
+    @BeforeClass
+    public static void buildIndex() throws Exception {
+        index = new GeneratedIndex(folder.getRoot().toPath(), 11);
+        search = new Search(index.settings());
+        SearchSettings settings = index.settings();
+        settings.setRescorePoolSize(POOL);
+        rescoring = new Search(settings);
+    }
+
+    @AfterClass
+    public static void close() throws Exception {
+        if (search != null) {
+            search.close();
+        }
+        if (rescoring != null) {
+            rescoring.close();
+        }
+    }
+
+    private static List<String> paths(QueryHit queryHit) {
+        List<String> paths = new ArrayList<>();
+        for (Hit hit : queryHit.getHits()) {
+            paths.add(hit.getPath());
+        }
+        return paths;
+    }
+
+    // every page a cursor leads to has hits, and only the last page has no cursor
+    private static List<String> byCursor(Search search, String query, String method, int size) {
+        List<String> paths = new ArrayList<>();
+        QueryHit queryHit = search.queryIndex(query, true, method, Page.number(1, size), false);
+        paths.addAll(paths(queryHit));
+        while (queryHit.getNext_cursor() != null) {
+            queryHit = search.queryIndex(query, true, method, Page.after(queryHit.getNext_cursor(), size), false);
+            assertFalse(method + " page after a cursor is empty", queryHit.getHits().isEmpty());
+            paths.addAll(paths(queryHit));
+        }
+        return paths;
+    }
+
+    private static List<String> byNumber(Search search, String query, String method, int size) {
+        List<String> paths = new ArrayList<>();
+        for (int number = 1; ; number++) {
+            List<String> page = paths(search.queryIndex(query, true, method, Page.number(number, size), false));
+            if (page.isEmpty()) {
+                return paths;
+            }
+            paths.addAll(page);
+        }
+    }
+
+    private static void assertConsistentPages(Search search, String query, String method, long totalHits) {
+        // a size the hits fill exactly, so the last page is a full one, and a size they do not
+        int exact = 1;
+        for (int size = 2; size <= 20; size++) {
+            if (totalHits % size == 0) {
+                exact = size;
+            }
+        }
+        for (int size : new int[]{exact, 7}) {
+            List<String> cursorPaths = byCursor(search, query, method, size);
+            List<String> numberedPaths = byNumber(search, query, method, size);
+            String message = method + " '" + query + "' by " + size;
+            assertEquals(message, totalHits, cursorPaths.size());
+            assertEquals(message, cursorPaths.size(), new HashSet<>(cursorPaths).size());
+            assertEquals(message, numberedPaths, cursorPaths);
+        }
+    }
+
+    @Test
+    public void pagesWithoutPool() {
+        String[] queries = {index.commonWord(), index.commonWord() + " " + index.word(new Random(1))};
+        for (String method : METHODS) {
+            for (String query : queries) {
+                long totalHits = search.queryIndex(query, true, method).getTotal_hits();
+                assertTrue(totalHits > 0);
+                assertConsistentPages(search, query, method, totalHits);
+            }
+        }
+    }
+
+    @Test
+    public void pagesOfTheRescorePool() {
+        String query = index.commonWord();
+        for (String method : METHODS) {
+            QueryHit first = rescoring.queryIndex(query, true, method, Page.number(1, 100), false);
+            if (method.equals("none")) {
+                // nothing to reorder, the query searches the whole index
+                assertTrue(first.getTotal_hits() > POOL);
+            } else {
+                // every hit there is sits in the pool, in one ranking
+                assertEquals(method, POOL, first.getTotal_hits());
+                assertEquals(method, POOL, first.getHits().size());
+                assertNull(method, first.getNext_cursor());
+            }
+            assertConsistentPages(rescoring, query, method, first.getTotal_hits());
+        }
+    }
+}